@@ -0,0 +1,180 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.PropertyResourceBundle;
+import java.util.Random;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the bundles written by <code>dist</code>: the time to load a
+ * bundle and look up the first message, and the throughput of lookups of
+ * existing messages.
+ * <p>
+ * The <code>bundle</code> parameter is the output format and the number of
+ * messages. "class" has the layout of the classes generated by msgfmt, and
+ * is limited by the constant pool of a single class to about 16k messages,
+ * like msgfmt.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class BundleBenchmark {
+
+    private static final String CLASS_NAME = "org.example.Messages_zh";
+
+    @Param({"class-1000", "class-10000",
+            "java-1000", "java-10000", "java-200000",
+            "catalog-1000", "catalog-10000", "catalog-200000",
+            "properties-1000", "properties-10000", "properties-200000"})
+    public String bundle;
+
+    private String format;
+    private File directory;
+    private File bundleFile;
+    private String[] keys;
+    private String firstKey;
+    private ResourceBundle loaded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createBundle() throws Exception {
+        format = bundle.substring(0, bundle.indexOf('-'));
+        int size = Integer.parseInt(bundle.substring(bundle.indexOf('-') + 1));
+        directory = Catalogs.createTempDirectory("bundle");
+        File po = new File(directory, "zh.po");
+        Catalogs.writePo(po, size);
+        File classes = new File(directory, "classes");
+        File packageDirectory = new File(classes, "org/example");
+        packageDirectory.mkdirs();
+
+        if ("class".equals(format)) {
+            ResourceBundleClassGenerator generator = new ResourceBundleClassGenerator(CLASS_NAME);
+            generator.addAll(po);
+            Files.write(new File(packageDirectory, "Messages_zh.class").toPath(), generator.generate());
+        } else if ("java".equals(format)) {
+            ResourceBundleSourceGenerator generator = new ResourceBundleSourceGenerator(CLASS_NAME);
+            generator.addAll(po);
+            File source = new File(directory, "Messages_zh.java");
+            Files.write(source.toPath(), generator.generate(StandardCharsets.UTF_8.newEncoder())
+                    .getBytes(StandardCharsets.UTF_8));
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null || compiler.run(null, null, null, "-encoding", "UTF-8", "-nowarn",
+                    "-d", classes.getPath(), source.getPath()) != 0) {
+                throw new IllegalStateException("Unable to compile " + source);
+            }
+        } else if ("catalog".equals(format)) {
+            CatalogWriter writer = new CatalogWriter();
+            writer.addAll(po);
+            Files.write(new File(packageDirectory, "Messages_zh.catalog").toPath(), writer.toByteArray());
+            Files.write(new File(packageDirectory, "Messages_zh.class").toPath(),
+                    writer.generateClass(CLASS_NAME, "Messages_zh.catalog"));
+        } else if ("properties".equals(format)) {
+            bundleFile = new File(packageDirectory, "Messages_zh.properties");
+            try (PoReader reader = new PoReader(po);
+                 PropertiesWriter writer = new PropertiesWriter(new FileOutputStream(bundleFile), false)) {
+                PoEntry entry;
+                while ((entry = reader.next()) != null) {
+                    writer.write(entry);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        List<String> compiled = Catalogs.compiledKeys(size);
+        if ("properties".equals(format)) {
+            // properties files have no messages with plural forms
+            ResourceBundle properties = load();
+            compiled.removeIf(key -> !properties.containsKey(key));
+        }
+        firstKey = compiled.get(0);
+        Collections.shuffle(compiled, new Random(42));
+        keys = compiled.toArray(new String[0]);
+        loaded = load();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteBundle() throws IOException {
+        Catalogs.delete(directory);
+    }
+
+    private ResourceBundle load() {
+        try {
+            if ("properties".equals(format)) {
+                try (InputStream in = new FileInputStream(bundleFile)) {
+                    return new PropertyResourceBundle(in);
+                }
+            }
+            URLClassLoader loader = new URLClassLoader(new URL[]{new File(directory, "classes").toURI().toURL()},
+                    getClass().getClassLoader());
+            return (ResourceBundle) loader.loadClass(CLASS_NAME).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads and initializes the bundle in a new class loader and looks up a
+     * message.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object init() {
+        return load().getObject(firstKey);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object lookup() {
+        String key = keys[next];
+        next = next + 1 == keys.length ? 0 : next + 1;
+        return loaded.getObject(key);
+    }
+}
@@ -0,0 +1,214 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes synthetic catalogs for the benchmarks. Every tenth message has a
+ * context, a plural form, is fuzzy or is untranslated, and translations
+ * consist of CJK text, so that all code paths and unicode escapes are
+ * exercised.
+ */
+final class Catalogs {
+
+    static final String PLURAL_FORMS = "nplurals=2; plural=(n != 1);";
+
+    private Catalogs() {
+    }
+
+    /**
+     * @return the message id of message <code>i</code>
+     */
+    static String msgid(int i) {
+        return "Message number " + i + " with some text";
+    }
+
+    /**
+     * @return the lookup keys of the messages that are compiled into bundles
+     */
+    static List<String> compiledKeys(int size) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            PoEntry entry = entry(i, true);
+            if (entry.isCompiled()) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    static void writePo(File file, int size) throws IOException {
+        write(file, size, true);
+    }
+
+    static void writePot(File file, int size) throws IOException {
+        write(file, size, false);
+    }
+
+    private static void write(File file, int size, boolean translated) throws IOException {
+        file.getParentFile().mkdirs();
+        try (PoWriter writer = new PoWriter(new FileOutputStream(file), StandardCharsets.UTF_8, PoWriter.DEFAULT_WIDTH)) {
+            writer.write(header(translated));
+            for (int i = 0; i < size; i++) {
+                writer.write(entry(i, translated));
+            }
+        }
+    }
+
+    private static PoEntry header(boolean translated) {
+        PoEntry header = new PoEntry();
+        header.getTranslatorComments().add("SOME DESCRIPTIVE TITLE.");
+        if (!translated) {
+            header.getFlags().add(PoEntry.FUZZY);
+        }
+        header.setMsgid("");
+        header.setMsgstr("Project-Id-Version: benchmark 1.0\n"
+                + "Report-Msgid-Bugs-To: \n"
+                + "POT-Creation-Date: 2024-01-01 12:00+0000\n"
+                + "PO-Revision-Date: 2024-01-02 12:00+0000\n"
+                + "Last-Translator: Translator \u5f20\u4f1f <translator@example.org>\n"
+                + "Language-Team: Chinese\n"
+                + "Language: zh\n"
+                + "MIME-Version: 1.0\n"
+                + "Content-Type: text/plain; charset=UTF-8\n"
+                + "Content-Transfer-Encoding: 8bit\n"
+                + "Plural-Forms: " + PLURAL_FORMS + "\n");
+        return header;
+    }
+
+    private static PoEntry entry(int i, boolean translated) {
+        PoEntry entry = new PoEntry();
+        entry.getReferences().add("src/main/java/org/example/Class" + (i / 50) + ".java:" + (i % 50 * 10 + 1));
+        entry.setMsgid(msgid(i));
+        String translation = "\u6d88\u606f\u7f16\u53f7 " + i + " \u548c\u4e00\u4e9b\u6587\u5b57";
+        switch (i % 10) {
+            case 1:
+                entry.setMsgctxt("context " + (i % 7));
+                break;
+            case 2:
+                entry.setMsgidPlural(msgid(i) + " in plural");
+                entry.getMsgstr().add(translated ? translation : "");
+                entry.getMsgstr().add(translated ? translation + " (plural)" : "");
+                return entry;
+            case 3:
+                if (translated) {
+                    entry.getFlags().add(PoEntry.FUZZY);
+                }
+                break;
+            case 4:
+                translated = false;
+                break;
+            case 5:
+                entry.getFlags().add("java-format");
+                entry.setMsgid(msgid(i) + " {0}");
+                translation += " {0}";
+                break;
+            default:
+        }
+        entry.setMsgstr(translated ? translation : "");
+        return entry;
+    }
+
+    static File createTempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory("gettext-" + prefix).toFile();
+    }
+
+    static void delete(File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * A log that discards everything, so logging does not distort the results.
+     */
+    static class QuietLog implements Log {
+
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        public void debug(CharSequence content) {
+        }
+
+        public void debug(CharSequence content, Throwable error) {
+        }
+
+        public void debug(Throwable error) {
+        }
+
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        public void info(CharSequence content) {
+        }
+
+        public void info(CharSequence content, Throwable error) {
+        }
+
+        public void info(Throwable error) {
+        }
+
+        public boolean isWarnEnabled() {
+            return false;
+        }
+
+        public void warn(CharSequence content) {
+        }
+
+        public void warn(CharSequence content, Throwable error) {
+        }
+
+        public void warn(Throwable error) {
+        }
+
+        public boolean isErrorEnabled() {
+            return true;
+        }
+
+        public void error(CharSequence content) {
+            System.err.println(content);
+        }
+
+        public void error(CharSequence content, Throwable error) {
+            System.err.println(content);
+            error.printStackTrace();
+        }
+
+        public void error(Throwable error) {
+            error.printStackTrace();
+        }
+    }
+}
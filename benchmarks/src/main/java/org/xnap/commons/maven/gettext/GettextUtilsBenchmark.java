@@ -0,0 +1,109 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the file processing in {@link GettextUtils}:
+ * <code>removePotCreationDate</code>, which runs after every xgettext and
+ * msgmerge invocation, and <code>unescapeUnicode</code>, which runs for
+ * every bundle with <code>outputFormat=java</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GettextUtilsBenchmark {
+
+    @Param({"1000", "10000", "200000"})
+    public int size;
+
+    private final Log log = new Catalogs.QuietLog();
+    private File directory;
+    private File pot;
+    private File potCopy;
+    private File escapedSource;
+    private File unescapedSource;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        directory = Catalogs.createTempDirectory("utils");
+        pot = new File(directory, "keys.pot");
+        Catalogs.writePot(pot, size);
+        potCopy = new File(directory, "copy.pot");
+
+        File po = new File(directory, "zh.po");
+        Catalogs.writePo(po, size);
+        ResourceBundleSourceGenerator generator = new ResourceBundleSourceGenerator("org.example.Messages_zh");
+        generator.addAll(po);
+        escapedSource = new File(directory, "Messages_zh.java");
+        Files.write(escapedSource.toPath(), generator.generate(null).getBytes(StandardCharsets.US_ASCII));
+        unescapedSource = new File(directory, "unescaped/Messages_zh.java");
+        unescapedSource.getParentFile().mkdirs();
+    }
+
+    /**
+     * <code>removePotCreationDate</code> changes the file, so every
+     * invocation gets a fresh copy.
+     */
+    @Setup(Level.Invocation)
+    public void copyPot() throws IOException {
+        Files.copy(pot.toPath(), potCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Catalogs.delete(directory);
+    }
+
+    @Benchmark
+    public long removePotCreationDate() throws MojoExecutionException {
+        GettextUtils.removePotCreationDate(potCopy, log);
+        return potCopy.length();
+    }
+
+    @Benchmark
+    public long unescapeUnicode() throws MojoExecutionException {
+        GettextUtils.unescapeUnicode(escapedSource, unescapedSource, "utf-8", log);
+        return unescapedSource.length();
+    }
+}
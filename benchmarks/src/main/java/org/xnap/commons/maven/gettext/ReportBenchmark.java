@@ -0,0 +1,92 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the statistics of the <code>report</code> goal for a few
+ * locales, and reading the translator from a header.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+    private static final String[] LOCALES = {"de", "fr", "ja", "pt_BR"};
+
+    @Param({"1000", "10000", "200000"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File directory;
+    private ReportMojo mojo;
+    private PoEntry header;
+
+    @Setup(Level.Trial)
+    public void createCatalogs() throws IOException {
+        directory = Catalogs.createTempDirectory("report");
+        for (String locale : LOCALES) {
+            Catalogs.writePo(new File(directory, locale + ".po"), size);
+        }
+        mojo = new ReportMojo();
+        mojo.setLog(new Catalogs.QuietLog());
+        mojo.poDirectory = directory;
+        mojo.threads = threads;
+        try (PoReader reader = new PoReader(new File(directory, LOCALES[0] + ".po"))) {
+            header = reader.next();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCatalogs() throws IOException {
+        Catalogs.delete(directory);
+    }
+
+    @Benchmark
+    public Object gatherStats() throws MojoExecutionException {
+        return mojo.gatherStats();
+    }
+
+    @Benchmark
+    public String lastTranslator() {
+        return header.getHeaderField("Last-Translator");
+    }
+}
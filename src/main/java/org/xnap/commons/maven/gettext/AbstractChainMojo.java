@@ -0,0 +1,172 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Base class of the goals that extract the messages and then merge the po
+ * files and build the bundles with the options of the <code>merge</code>
+ * and <code>dist</code> goals.
+ */
+public abstract class AbstractChainMojo
+        extends GettextMojo {
+
+    /**
+     * Merge the po files in <code>poDirectory</code> with the template after
+     * extracting the messages, like the <code>merge</code> goal.
+     */
+    @Parameter(property = "merge", defaultValue = "false")
+    protected boolean merge;
+
+    /**
+     * Build the bundles of the po files in <code>poDirectory</code> after
+     * extracting and merging, like the <code>dist</code> goal. Its
+     * <code>inProcess</code> and <code>encoding</code> are those of this goal.
+     */
+    @Parameter(property = "dist", defaultValue = "false")
+    protected boolean dist;
+
+    /**
+     * The msgmerge command, if <code>merge</code> is set. With
+     * <code>inProcess</code> the po files are merged inside the plugin.
+     */
+    @Parameter(property = "msgmergeCmd", defaultValue = "msgmerge", required = true)
+    protected String msgmergeCmd;
+
+    /**
+     * The msgmerge backup mode: none, numbered, existing, simple.
+     */
+    @Parameter(property = "backup", defaultValue = "none", required = true)
+    protected String backup;
+
+    /**
+     * Disable fuzzy matching when merging.
+     */
+    @Parameter(property = "noFuzzyMatching", defaultValue = "false")
+    protected boolean noFuzzyMatching;
+
+    /**
+     * The msgcat command, if <code>dist</code> is set.
+     */
+    @Parameter(property = "msgcatCmd", defaultValue = "msgcat", required = true)
+    protected String msgcatCmd;
+
+    /**
+     * The msgfmt command, if <code>dist</code> is set.
+     */
+    @Parameter(property = "msgfmtCmd", defaultValue = "msgfmt", required = true)
+    protected String msgfmtCmd;
+
+    /**
+     * The package and file name of the generated class or properties files.
+     * Required if <code>dist</code> is set.
+     */
+    @Parameter(property = "targetBundle")
+    protected String targetBundle;
+
+    /**
+     * Output format of <code>dist</code>, can be "class", "properties", "java" or "catalog".
+     */
+    @Parameter(property = "outputFormat", defaultValue = "class", required = true)
+    protected String outputFormat;
+
+    /**
+     * Java version. Can be "1" or "2".
+     */
+    @Parameter(property = "javaVersion", defaultValue = "2", required = true)
+    protected String javaVersion;
+
+    /**
+     * The locale of the messages in the source code.
+     */
+    @Parameter(property = "sourceLocale", defaultValue = "en", required = true)
+    protected String sourceLocale;
+
+    /**
+     * Use unicode escape sequences when printing non-ASCII characters.
+     */
+    @Parameter(property = "escapeUnicode", defaultValue = "false", required = true)
+    protected boolean escapeUnicode;
+
+    /**
+     * Write properties files in UTF-8 instead of escaping non-ASCII characters.
+     */
+    @Parameter(property = "utf8Properties", defaultValue = "false")
+    protected boolean utf8Properties;
+
+    /**
+     * Number of classes to split every bundle into, see the dist goal.
+     */
+    @Parameter(property = "classShards", defaultValue = "1")
+    protected int classShards;
+
+    protected void checkConfiguration()
+            throws MojoExecutionException {
+        if (dist && targetBundle == null) {
+            throw new MojoExecutionException("targetBundle is required to build the bundles.");
+        }
+    }
+
+    MergeMojo createMergeMojo() {
+        MergeMojo mojo = configure(new MergeMojo());
+        mojo.msgmergeCmd = msgmergeCmd;
+        mojo.backup = backup;
+        mojo.sort = sort;
+        mojo.noFuzzyMatching = noFuzzyMatching;
+        mojo.inProcess = inProcess;
+        return mojo;
+    }
+
+    DistMojo createDistMojo() {
+        DistMojo mojo = configure(new DistMojo());
+        mojo.msgcatCmd = msgcatCmd;
+        mojo.msgfmtCmd = msgfmtCmd;
+        mojo.targetBundle = targetBundle;
+        mojo.outputFormat = outputFormat;
+        mojo.javaVersion = javaVersion;
+        mojo.sourceLocale = sourceLocale;
+        mojo.escapeUnicode = escapeUnicode;
+        mojo.encoding = encoding;
+        mojo.inProcess = inProcess;
+        mojo.utf8Properties = utf8Properties;
+        mojo.classShards = classShards;
+        return mojo;
+    }
+
+    /**
+     * Passes the options shared by all goals on. <code>includes</code>,
+     * <code>excludes</code> and <code>extraArgs</code> select and process
+     * source files here, so they are not passed.
+     */
+    <T extends AbstractGettextMojo> T configure(T mojo) {
+        mojo.setLog(getLog());
+        mojo.outputDirectory = outputDirectory;
+        mojo.sourceDirectory = sourceDirectory;
+        mojo.poDirectory = poDirectory;
+        mojo.keysFile = keysFile;
+        mojo.extraArgs = new String[0];
+        mojo.workDirectory = workDirectory;
+        mojo.threads = threads;
+        mojo.printPOTCreationDate = printPOTCreationDate;
+        mojo.metricsDirectory = metricsDirectory;
+        mojo.executionId = executionId;
+        mojo.messageKeys = getMessageKeys();
+        return mojo;
+    }
+}
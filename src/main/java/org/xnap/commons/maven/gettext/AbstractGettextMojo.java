@@ -58,6 +58,19 @@ public abstract class AbstractGettextMojo
     @Parameter(property = "extraArgs")
     protected String[] extraArgs;
 
+    /**
+     * Directory for intermediate files and caches kept between builds.
+     */
+    @Parameter(property = "workDirectory", defaultValue = "${project.build.directory}/gettext", required = true)
+    protected File workDirectory;
+
+    /**
+     * Number of files to process in parallel, e.g. msgmerge processes.
+     * Defaults to the number of available processors.
+     */
+    @Parameter(property = "threads", defaultValue = "0")
+    protected int threads;
+
     @Parameter(property = "includes")
     protected String[] includes;
 
@@ -69,4 +82,27 @@ public abstract class AbstractGettextMojo
      */
     @Parameter(property = "printPOTCreationDate", defaultValue = "false", required = true)
     protected boolean printPOTCreationDate;
+
+    /**
+     * Directory for the JSON reports of the wall time, subprocesses and bytes
+     * read and written of every goal execution and every file it processes.
+     */
+    @Parameter(property = "metricsDirectory", defaultValue = "${project.build.directory}/gettext-metrics")
+    protected File metricsDirectory;
+
+    @Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
+    protected String executionId;
+
+    /**
+     * The message ids of all catalogs this goal reads in process, shared
+     * with the goals an aggregating goal runs.
+     */
+    MessageKeys messageKeys;
+
+    synchronized MessageKeys getMessageKeys() {
+        if (messageKeys == null) {
+            messageKeys = new MessageKeys();
+        }
+        return messageKeys;
+    }
 }
@@ -0,0 +1,218 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.model.ConfigurationContainer;
+import org.apache.maven.model.FileSet;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts the messages of all projects of a multi-module build into a
+ * single template with one xgettext run, and optionally merges the po files
+ * and builds the bundles once.
+ * <p>
+ * The sources of every project are its <code>sourceDirectory</code> and
+ * <code>extraSourceFiles</code> as configured for this plugin in the
+ * project, or its build source directory. References in the template are
+ * relative to the directory the file was found in, as in the template the
+ * <code>gettext</code> goal writes for the project. Files with the same
+ * relative path in several projects are referenced relative to the
+ * directory of the aggregating project instead.
+ */
+@Mojo(name = "aggregate", aggregator = true, defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class AggregateMojo
+        extends AbstractChainMojo {
+
+    private static final String PLUGIN_ARTIFACT_ID = "gettext-maven-plugin";
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    protected List<MavenProject> reactorProjects;
+
+    @Parameter(defaultValue = "${basedir}", readonly = true, required = true)
+    protected File basedir;
+
+    private final List<File> sourceRoots = new ArrayList<>();
+    private final Map<String, File> sourceFiles = new HashMap<>();
+
+    public void execute()
+            throws MojoExecutionException {
+        checkConfiguration();
+        super.execute();
+        if (merge) {
+            createMergeMojo().execute();
+        }
+        if (dist) {
+            createDistMojo().execute();
+        }
+    }
+
+    @Override
+    protected List<File> getSourceRoots() {
+        return sourceRoots.isEmpty() ? super.getSourceRoots() : sourceRoots;
+    }
+
+    @Override
+    protected File getSourceFile(String path) {
+        File file = sourceFiles.get(path);
+        return file != null ? file : super.getSourceFile(path);
+    }
+
+    @Override
+    protected List<String> getSourceFiles() throws MojoExecutionException {
+        sourceRoots.clear();
+        sourceFiles.clear();
+        List<String> files = new ArrayList<>();
+        boolean needsBasedir = false;
+        for (MavenProject project : reactorProjects) {
+            String directory = getConfiguration(project, "sourceDirectory");
+            File root = directory != null ? resolve(project, directory) : new File(project.getBuild().getSourceDirectory());
+            if (root.isDirectory()) {
+                needsBasedir |= addFiles(root, scanSourceDirectory(root), files);
+            }
+            FileSet extra = getExtraSourceFiles(project);
+            if (extra != null) {
+                File extraRoot = resolve(project, extra.getDirectory());
+                if (extraRoot.isDirectory()) {
+                    needsBasedir |= addFiles(extraRoot, scanFileSet(extra, extraRoot), files);
+                }
+            }
+        }
+        if (needsBasedir) {
+            sourceRoots.add(basedir);
+        }
+        getLog().debug("Found " + files.size() + " source files in " + reactorProjects.size() + " projects.");
+        return files;
+    }
+
+    /**
+     * Adds the files of a source root. Files with a path that is already
+     * known are added with their path relative to <code>basedir</code>, or
+     * their absolute path.
+     *
+     * @return <code>true</code> if a path is relative to <code>basedir</code>
+     */
+    private boolean addFiles(File root, List<String> paths, List<String> files) {
+        if (paths.isEmpty()) {
+            return false;
+        }
+        if (!sourceRoots.contains(root)) {
+            sourceRoots.add(root);
+        }
+        boolean relativeToBasedir = false;
+        Path base = basedir.toPath().toAbsolutePath().normalize();
+        for (String path : paths) {
+            File file = new File(root, path);
+            if (sourceFiles.containsKey(path)) {
+                Path absolute = file.toPath().toAbsolutePath().normalize();
+                if (absolute.startsWith(base)) {
+                    path = base.relativize(absolute).toString().replace(File.separatorChar, '/');
+                    relativeToBasedir = true;
+                } else {
+                    path = absolute.toString();
+                }
+                if (sourceFiles.containsKey(path)) {
+                    continue;
+                }
+            }
+            sourceFiles.put(path, file);
+            files.add(path);
+        }
+        return relativeToBasedir;
+    }
+
+    private static File resolve(MavenProject project, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(project.getBasedir(), path);
+    }
+
+    /**
+     * @return the value of an option of this plugin in a project, from the
+     * plugin configuration or any of its executions
+     */
+    private static String getConfiguration(MavenProject project, String name) {
+        for (Xpp3Dom configuration : getConfigurations(project)) {
+            Xpp3Dom child = configuration.getChild(name);
+            if (child != null && child.getValue() != null) {
+                return child.getValue().trim();
+            }
+        }
+        return null;
+    }
+
+    private static FileSet getExtraSourceFiles(MavenProject project) {
+        for (Xpp3Dom configuration : getConfigurations(project)) {
+            Xpp3Dom child = configuration.getChild("extraSourceFiles");
+            if (child != null && child.getChild("directory") != null) {
+                FileSet fileSet = new FileSet();
+                fileSet.setDirectory(child.getChild("directory").getValue().trim());
+                for (String include : getValues(child.getChild("includes"))) {
+                    fileSet.addInclude(include);
+                }
+                for (String exclude : getValues(child.getChild("excludes"))) {
+                    fileSet.addExclude(exclude);
+                }
+                return fileSet;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> getValues(Xpp3Dom parent) {
+        List<String> values = new ArrayList<>();
+        if (parent != null) {
+            for (Xpp3Dom child : parent.getChildren()) {
+                if (child.getValue() != null) {
+                    values.add(child.getValue().trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<Xpp3Dom> getConfigurations(MavenProject project) {
+        List<Xpp3Dom> configurations = new ArrayList<>();
+        for (Object plugin : project.getBuildPlugins()) {
+            if (PLUGIN_ARTIFACT_ID.equals(((Plugin) plugin).getArtifactId())) {
+                addConfiguration((Plugin) plugin, configurations);
+                for (Object execution : ((Plugin) plugin).getExecutions()) {
+                    addConfiguration((PluginExecution) execution, configurations);
+                }
+            }
+        }
+        return configurations;
+    }
+
+    private static void addConfiguration(ConfigurationContainer container, List<Xpp3Dom> configurations) {
+        if (container.getConfiguration() instanceof Xpp3Dom) {
+            configurations.add((Xpp3Dom) container.getConfiguration());
+        }
+    }
+}
@@ -22,18 +22,18 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Invokes the gettext:gettext goal and invokes msgattrib to update po files.
  *
  * @author Tammo van Lessen
  */
-@Mojo(name = "attrib", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+@Mojo(name = "attrib", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
 public class AttribMojo
     extends AbstractGettextMojo {
 
@@ -61,28 +61,70 @@ public class AttribMojo
 		}
     	ds.scan();
     	String[] files = ds.getIncludedFiles();
-    	for (int i = 0; i < files.length; i++) {
-    		getLog().info("Processing " + files[i]);
+    	BuildMetrics metrics = new BuildMetrics("attrib");
+    	try {
+    		for (int i = 0; i < files.length; i++) {
+    			BuildMetrics.Record fileMetrics = metrics.file(files[i]);
+    			// a project with the same poDirectory may process it in parallel
+    			try (FileLocks.Lock lock = FileLocks.write(new File(poDirectory, files[i]))) {
+    				attrib(files[i], fileMetrics);
+    			} finally {
+    				fileMetrics.finish();
+    			}
+    		}
+    	} finally {
+    		metrics.write(metricsDirectory, executionId, getLog());
+    	}
+    }
+
+    private void attrib(String fileName, BuildMetrics.Record fileMetrics)
+        throws MojoExecutionException
+    {
+    		File file = new File(poDirectory, fileName);
+    		getLog().info("Processing " + fileName);
+    		fileMetrics.read(file);
+    		// msgattrib writes next to the po file, which is only replaced if it has changed
+    		File tmpFile;
+    		try {
+    			tmpFile = GettextUtils.createTempFile(file);
+    		} catch (IOException e) {
+    			throw new MojoExecutionException("Unable to write " + file, e);
+    		}
     		Commandline cl = new Commandline();
     		cl.setExecutable(msgattribCmd);
 			for (String arg : extraArgs) {
     			cl.createArg().setValue(arg);
 			}
         	cl.createArg().setValue("-o");
-        	cl.createArg().setFile(new File(poDirectory, files[i]));
-        	cl.createArg().setFile(new File(poDirectory, files[i]));
+        	cl.createArg().setFile(tmpFile);
+        	cl.createArg().setFile(file);
 
         	getLog().debug("Executing: " + cl.toString());
     		StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
     		StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
-        	try {
-    			CommandLineUtils.executeCommandLine(cl, out, err);
+    		try {
+    			if (fileMetrics.run(cl, out, err) != 0) {
+    				fileMetrics.setStatus(BuildMetrics.FAILED);
+    				return;
+    			}
+    			if (!tmpFile.isFile()) {
+    				return;
+    			}
+    			if (!printPOTCreationDate) {
+    				GettextUtils.removePotCreationDate(tmpFile, fileName, getLog());
+    			}
+    			if (GettextUtils.replaceIfChanged(tmpFile, file)) {
+    				fileMetrics.written(file);
+    			} else {
+    				getLog().debug(fileName + " is up to date");
+    			}
     		} catch (CommandLineException e) {
+    			fileMetrics.setStatus(BuildMetrics.FAILED);
     			getLog().error("Could not execute " + msgattribCmd + ".", e);
+    		} catch (IOException e) {
+    			throw new MojoExecutionException("Unable to write " + file, e);
+    		} finally {
+    			tmpFile.delete();
     		}
-    		if (!printPOTCreationDate) {
-    			GettextUtils.removePotCreationDate(new File(poDirectory, files[i]), getLog());
-    		}
-    	}
     }
 }
@@ -0,0 +1,170 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Log} that records messages in memory until they are replayed to
+ * another log with {@link #flush()}. Used by worker threads so that the output
+ * for one file is printed as a single block.
+ */
+class BufferedLog implements Log {
+
+    private final Log target;
+    private final List<Record> records = new ArrayList<>();
+
+    BufferedLog(Log target) {
+        this.target = target;
+    }
+
+    /**
+     * Replays all recorded messages to the target log and clears the buffer.
+     */
+    void flush() {
+        List<Record> copy;
+        synchronized (records) {
+            copy = new ArrayList<>(records);
+            records.clear();
+        }
+        for (Record record : copy) {
+            record.replay(target);
+        }
+    }
+
+    private void add(int level, CharSequence message, Throwable error) {
+        synchronized (records) {
+            records.add(new Record(level, message, error));
+        }
+    }
+
+    public boolean isDebugEnabled() {
+        return target.isDebugEnabled();
+    }
+
+    public void debug(CharSequence content) {
+        add(LoggerStreamConsumer.DEBUG, content, null);
+    }
+
+    public void debug(CharSequence content, Throwable error) {
+        add(LoggerStreamConsumer.DEBUG, content, error);
+    }
+
+    public void debug(Throwable error) {
+        add(LoggerStreamConsumer.DEBUG, null, error);
+    }
+
+    public boolean isInfoEnabled() {
+        return target.isInfoEnabled();
+    }
+
+    public void info(CharSequence content) {
+        add(LoggerStreamConsumer.INFO, content, null);
+    }
+
+    public void info(CharSequence content, Throwable error) {
+        add(LoggerStreamConsumer.INFO, content, error);
+    }
+
+    public void info(Throwable error) {
+        add(LoggerStreamConsumer.INFO, null, error);
+    }
+
+    public boolean isWarnEnabled() {
+        return target.isWarnEnabled();
+    }
+
+    public void warn(CharSequence content) {
+        add(LoggerStreamConsumer.WARN, content, null);
+    }
+
+    public void warn(CharSequence content, Throwable error) {
+        add(LoggerStreamConsumer.WARN, content, error);
+    }
+
+    public void warn(Throwable error) {
+        add(LoggerStreamConsumer.WARN, null, error);
+    }
+
+    public boolean isErrorEnabled() {
+        return target.isErrorEnabled();
+    }
+
+    public void error(CharSequence content) {
+        add(LoggerStreamConsumer.ERROR, content, null);
+    }
+
+    public void error(CharSequence content, Throwable error) {
+        add(LoggerStreamConsumer.ERROR, content, error);
+    }
+
+    public void error(Throwable error) {
+        add(LoggerStreamConsumer.ERROR, null, error);
+    }
+
+    private static class Record {
+
+        private final int level;
+        private final CharSequence message;
+        private final Throwable error;
+
+        Record(int level, CharSequence message, Throwable error) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+
+        void replay(Log log) {
+            if (level == LoggerStreamConsumer.DEBUG) {
+                if (message == null) {
+                    log.debug(error);
+                } else if (error == null) {
+                    log.debug(message);
+                } else {
+                    log.debug(message, error);
+                }
+            } else if (level == LoggerStreamConsumer.INFO) {
+                if (message == null) {
+                    log.info(error);
+                } else if (error == null) {
+                    log.info(message);
+                } else {
+                    log.info(message, error);
+                }
+            } else if (level == LoggerStreamConsumer.WARN) {
+                if (message == null) {
+                    log.warn(error);
+                } else if (error == null) {
+                    log.warn(message);
+                } else {
+                    log.warn(message, error);
+                }
+            } else {
+                if (message == null) {
+                    log.error(error);
+                } else if (error == null) {
+                    log.error(message);
+                } else {
+                    log.error(message, error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the wall time, the subprocesses and the bytes read and written
+ * of a goal and of every file it processes, and writes them as JSON to
+ * <code>metricsDirectory</code>, one file per goal execution:
+ * <pre>
+ * {
+ *   "goal": "dist", "execution": "default", "started": "...", "wallTimeMillis": 812,
+ *   "processed": 3, "skipped": 1, "failed": 0, "bytesRead": ..., "bytesWritten": ...,
+ *   "subprocesses": [],
+ *   "files": [
+ *     { "name": "de.po", "status": "processed", "wallTimeMillis": 240,
+ *       "bytesRead": ..., "bytesWritten": ...,
+ *       "subprocesses": [ { "command": "msgfmt", "exitCode": 0, "wallTimeMillis": 231 } ] }
+ *   ]
+ * }
+ * </pre>
+ * The totals include the goal itself and all files.
+ */
+class BuildMetrics {
+
+    static final String PROCESSED = "processed";
+    static final String SKIPPED = "skipped";
+    static final String FAILED = "failed";
+
+    interface FileTask {
+        void execute(Log log, Record fileMetrics) throws MojoExecutionException;
+    }
+
+    private final String goal;
+    private final Instant started = Instant.now();
+    private final Record total;
+    private final List<Record> files = new ArrayList<>();
+    private int batchProcessed;
+
+    BuildMetrics(String goal) {
+        this.goal = goal;
+        this.total = new Record(goal);
+    }
+
+    /**
+     * @return the record of the goal itself, for work that is not done per file
+     */
+    Record getGoal() {
+        return total;
+    }
+
+    /**
+     * Starts the record of a file.
+     */
+    synchronized Record file(String name) {
+        Record fileMetrics = new Record(name);
+        files.add(fileMetrics);
+        return fileMetrics;
+    }
+
+    /**
+     * Counts files that are processed together, e.g. by a single xgettext
+     * run, and have no record of their own.
+     */
+    synchronized void addProcessed(int count) {
+        batchProcessed += count;
+    }
+
+    /**
+     * Wraps a task that processes a single file, so that its record is
+     * started and finished with it and marked as failed if it throws.
+     */
+    TaskExecutor.Task task(String name, FileTask task) {
+        return log -> {
+            Record fileMetrics = file(name);
+            try {
+                task.execute(log, fileMetrics);
+            } catch (MojoExecutionException | RuntimeException e) {
+                fileMetrics.setStatus(FAILED);
+                throw e;
+            } finally {
+                fileMetrics.finish();
+            }
+        };
+    }
+
+    /**
+     * Writes the metrics as <code>goal-execution.json</code>. Failures are
+     * only logged, since the metrics must not break the build.
+     *
+     * @param directory the directory, or <code>null</code> to write nothing
+     */
+    void write(File directory, String execution, Log log) {
+        if (directory == null) {
+            return;
+        }
+        total.finish();
+        String name = goal + "-" + (execution == null ? "default" : execution.replaceAll("[^A-Za-z0-9_.-]", "_"));
+        File file = new File(directory, name + ".json");
+        try {
+            directory.mkdirs();
+            Files.write(file.toPath(), toJson(execution).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Could not write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    synchronized String toJson(String execution) {
+        List<Record> records = new ArrayList<>(files);
+        records.sort(Comparator.comparing(fileMetrics -> fileMetrics.name));
+        int processed = batchProcessed;
+        int skipped = 0;
+        int failed = 0;
+        long bytesRead = total.bytesRead;
+        long bytesWritten = total.bytesWritten;
+        for (Record fileMetrics : records) {
+            if (PROCESSED.equals(fileMetrics.status)) {
+                processed++;
+            } else if (SKIPPED.equals(fileMetrics.status)) {
+                skipped++;
+            } else {
+                failed++;
+            }
+            bytesRead += fileMetrics.bytesRead;
+            bytesWritten += fileMetrics.bytesWritten;
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"goal\": ").append(quote(goal)).append(",\n");
+        json.append("  \"execution\": ").append(execution == null ? "null" : quote(execution)).append(",\n");
+        json.append("  \"started\": ").append(quote(started.toString())).append(",\n");
+        json.append("  \"wallTimeMillis\": ").append(total.getWallTimeMillis()).append(",\n");
+        json.append("  \"processed\": ").append(processed).append(",\n");
+        json.append("  \"skipped\": ").append(skipped).append(",\n");
+        json.append("  \"failed\": ").append(failed).append(",\n");
+        json.append("  \"bytesRead\": ").append(bytesRead).append(",\n");
+        json.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+        json.append("  \"subprocesses\": ");
+        total.appendSubprocesses(json, "  ");
+        json.append(",\n");
+        json.append("  \"files\": [");
+        for (int i = 0; i < records.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            records.get(i).appendTo(json, "    ");
+        }
+        json.append(records.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    static String quote(String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The metrics of a single file or of the goal.
+     */
+    static class Record {
+
+        private final String name;
+        private final long start = System.nanoTime();
+        private long end;
+        private String status = PROCESSED;
+        private long bytesRead;
+        private long bytesWritten;
+        private final List<String> subprocesses = new ArrayList<>();
+
+        Record(String name) {
+            this.name = name;
+        }
+
+        synchronized void setStatus(String status) {
+            this.status = status;
+        }
+
+        /**
+         * Adds the size of a file that is read.
+         */
+        synchronized void read(File file) {
+            bytesRead += file.length();
+        }
+
+        /**
+         * Adds the size of a file that has been written.
+         */
+        synchronized void written(File file) {
+            bytesWritten += file.length();
+        }
+
+        synchronized void finish() {
+            if (end == 0) {
+                end = System.nanoTime();
+            }
+        }
+
+        /**
+         * Runs a subprocess and records its exit code and wall time.
+         */
+        int run(Commandline cl, StreamConsumer out, StreamConsumer err) throws CommandLineException {
+            long started = System.nanoTime();
+            Integer exitCode = null;
+            try {
+                exitCode = CommandLineUtils.executeCommandLine(cl, out, err);
+                return exitCode;
+            } finally {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                String command = new File(cl.getLiteralExecutable()).getName();
+                synchronized (this) {
+                    subprocesses.add("{ \"command\": " + quote(command) + ", \"exitCode\": " + exitCode
+                            + ", \"wallTimeMillis\": " + millis + " }");
+                }
+            }
+        }
+
+        synchronized long getWallTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis((end == 0 ? System.nanoTime() : end) - start);
+        }
+
+        synchronized void appendTo(StringBuilder json, String indent) {
+            json.append(indent).append("{ \"name\": ").append(quote(name))
+                    .append(", \"status\": ").append(quote(status))
+                    .append(", \"wallTimeMillis\": ").append(getWallTimeMillis())
+                    .append(", \"bytesRead\": ").append(bytesRead)
+                    .append(", \"bytesWritten\": ").append(bytesWritten)
+                    .append(", \"subprocesses\": ");
+            appendSubprocesses(json, indent);
+            json.append(" }");
+        }
+
+        synchronized void appendSubprocesses(StringBuilder json, String indent) {
+            if (subprocesses.isEmpty()) {
+                json.append("[]");
+                return;
+            }
+            json.append('[');
+            for (int i = 0; i < subprocesses.size(); i++) {
+                json.append(i == 0 ? "\n" : ",\n").append(indent).append("  ").append(subprocesses.get(i));
+            }
+            json.append('\n').append(indent).append(']');
+        }
+    }
+}
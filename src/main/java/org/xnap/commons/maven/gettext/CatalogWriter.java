@@ -0,0 +1,206 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.xnap.commons.maven.gettext.runtime.CatalogResourceBundle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the binary message catalogs read by {@link CatalogResourceBundle}
+ * and the small bundle classes that load them.
+ */
+class CatalogWriter {
+
+    private static final String RUNTIME_CLASS = CatalogResourceBundle.class.getName().replace('.', '/');
+
+    private final MessageKeys messageKeys;
+    private final MessageKeys.Messages messages;
+    private PoEntry header;
+    private boolean hasPlurals;
+
+    CatalogWriter() {
+        this(new MessageKeys());
+    }
+
+    /**
+     * @param messageKeys stores the keys, shared by the writers of all locales
+     */
+    CatalogWriter(MessageKeys messageKeys) {
+        this.messageKeys = messageKeys;
+        this.messages = new MessageKeys.Messages(messageKeys);
+    }
+
+    /**
+     * Adds all messages of a catalog that msgfmt would include.
+     */
+    void addAll(File poFile) throws IOException {
+        try (PoReader reader = new PoReader(poFile, messageKeys)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                addEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds all messages of a catalog that has already been read.
+     */
+    void addAll(List<PoEntry> entries) {
+        for (PoEntry entry : entries) {
+            addEntry(entry);
+        }
+    }
+
+    private void addEntry(PoEntry entry) {
+        if (entry.isHeader()) {
+            header = entry;
+        }
+        if (entry.isCompiled()) {
+            add(entry);
+        }
+    }
+
+    void add(PoEntry entry) {
+        // msgfmt rejects duplicates, the first definition wins here
+        if (messages.add(entry)) {
+            hasPlurals |= entry.isPlural();
+        }
+    }
+
+    /**
+     * @return the binary catalog
+     */
+    byte[] toByteArray() {
+        List<String> keys = messages.getKeys();
+        int tableSize = getTableSize(keys.size());
+        int[] table = new int[tableSize];
+        for (int i = 0; i < keys.size(); i++) {
+            int slot = CatalogResourceBundle.spread(keys.get(i).hashCode()) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = i + 1;
+        }
+
+        StringPool pool = new StringPool();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        ByteArrayOutputStream values = new ByteArrayOutputStream();
+        int valueCount = 0;
+        try {
+            DataOutputStream entryOut = new DataOutputStream(entries);
+            DataOutputStream valueOut = new DataOutputStream(values);
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                boolean plural = messages.isPlural(i);
+                String[] forms = plural ? (String[]) messages.getValue(i) : new String[]{(String) messages.getValue(i)};
+                entryOut.writeInt(key.hashCode());
+                pool.write(entryOut, key);
+                entryOut.writeInt(valueCount);
+                entryOut.writeInt(plural ? forms.length : 0);
+                for (String form : forms) {
+                    pool.write(valueOut, form);
+                    valueCount++;
+                }
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(CatalogResourceBundle.MAGIC);
+            out.writeInt(CatalogResourceBundle.VERSION);
+            out.writeInt(keys.size());
+            out.writeInt(tableSize);
+            out.writeInt(valueCount);
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+            entries.writeTo(out);
+            values.writeTo(out);
+            pool.bytes.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // cannot happen with in-memory streams
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a power of two table size that is at most three quarters full.
+     */
+    static int getTableSize(int count) {
+        int size = 8;
+        while (size - size / 4 <= count) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Generates the bundle class, which loads the catalog from a resource
+     * next to it and provides the <code>pluralEval</code> method for catalogs
+     * with plural forms.
+     *
+     * @param className    the binary name of the class, e.g. <code>org.example.Messages_de</code>
+     * @param resourceName the file name of the catalog
+     */
+    byte[] generateClass(String className, String resourceName) {
+        ClassFileWriter cw = new ClassFileWriter(className.replace('.', '/'), RUNTIME_CLASS);
+        ClassFileWriter.Code init = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 3, 1);
+        init.local(ClassFileWriter.ALOAD, 0);
+        init.pushClass(cw.getClassName());
+        init.pushString(resourceName);
+        init.op(ClassFileWriter.INVOKESPECIAL,
+                cw.methodRef(RUNTIME_CLASS, "<init>", "(Ljava/lang/Class;Ljava/lang/String;)V"));
+        init.op(ClassFileWriter.RETURN);
+        if (hasPlurals) {
+            ResourceBundleClassGenerator.addPluralEval(cw, PluralExpression.fromHeader(header));
+        }
+        return cw.toByteArray();
+    }
+
+    /**
+     * The UTF-8 string pool. Equal strings are stored once.
+     */
+    private static class StringPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        /**
+         * Adds a string and writes its offset and length.
+         */
+        void write(DataOutputStream out, String s) throws IOException {
+            byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+            Integer offset = offsets.get(s);
+            if (offset == null) {
+                offset = bytes.size();
+                offsets.put(s, offset);
+                bytes.write(encoded);
+            }
+            out.writeInt(offset);
+            out.writeInt(encoded.length);
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for Java class files, just enough to emit the resource
+ * bundle classes msgfmt would otherwise generate through javac.
+ * <p>
+ * Classes are written with version 49 (Java 5), which does not require stack
+ * map frames, so branch targets need no type information.
+ */
+class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int LCONST_0 = 0x09;
+    static final int LCONST_1 = 0x0a;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int LLOAD = 0x16;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IADD = 0x60;
+    static final int LADD = 0x61;
+    static final int ISUB = 0x64;
+    static final int LSUB = 0x65;
+    static final int LMUL = 0x69;
+    static final int LDIV = 0x6d;
+    static final int IREM = 0x70;
+    static final int LREM = 0x71;
+    static final int ISHL = 0x78;
+    static final int IAND = 0x7e;
+    static final int IINC = 0x84;
+    static final int LCMP = 0x94;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int GOTO = 0xa7;
+    static final int TABLESWITCH = 0xaa;
+    static final int LRETURN = 0xad;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int ANEWARRAY = 0xbd;
+    static final int ATHROW = 0xbf;
+    static final int IFNULL = 0xc6;
+    static final int IFNONNULL = 0xc7;
+
+    /**
+     * Largest code size of a method allowed by the class file format.
+     */
+    static final int MAX_CODE_SIZE = 65535;
+
+    private final String className;
+    private final String superName;
+    private final DataOutputStream pool;
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    /**
+     * @param className internal name of the class, e.g. <code>org/example/Messages_de</code>
+     * @param superName internal name of the super class
+     */
+    ClassFileWriter(String className, String superName) {
+        this.className = className;
+        this.superName = superName;
+        this.pool = new DataOutputStream(poolBytes);
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index == null) {
+            try {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+            } catch (UTFDataFormatException e) {
+                throw new IllegalArgumentException("String constant too long", e);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add("U" + value, 1);
+        }
+        return index;
+    }
+
+    /**
+     * @return <code>true</code> if the string fits into a single constant
+     */
+    static boolean isConstant(String value) {
+        if (value.length() > MAX_CODE_SIZE) {
+            return false;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+        }
+        return length <= MAX_CODE_SIZE;
+    }
+
+    int classRef(String internalName) {
+        Integer index = constants.get("C" + internalName);
+        if (index == null) {
+            int name = utf8(internalName);
+            write(7, name);
+            index = add("C" + internalName, 1);
+        }
+        return index;
+    }
+
+    int string(String value) {
+        Integer index = constants.get("S" + value);
+        if (index == null) {
+            int utf8 = utf8(value);
+            write(8, utf8);
+            index = add("S" + value, 1);
+        }
+        return index;
+    }
+
+    int integer(int value) {
+        Integer index = constants.get("I" + value);
+        if (index == null) {
+            try {
+                pool.writeByte(3);
+                pool.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add("I" + value, 1);
+        }
+        return index;
+    }
+
+    int longConstant(long value) {
+        Integer index = constants.get("J" + value);
+        if (index == null) {
+            try {
+                pool.writeByte(5);
+                pool.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add("J" + value, 2);
+        }
+        return index;
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + ":" + descriptor;
+        Integer index = constants.get(key);
+        if (index == null) {
+            int ownerIndex = classRef(owner);
+            String ntKey = "N" + name + ":" + descriptor;
+            Integer nameAndType = constants.get(ntKey);
+            if (nameAndType == null) {
+                int nameIndex = utf8(name);
+                int descriptorIndex = utf8(descriptor);
+                write(12, nameIndex, descriptorIndex);
+                nameAndType = add(ntKey, 1);
+            }
+            write(tag, ownerIndex, nameAndType);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private void write(int tag, int... values) {
+        try {
+            pool.writeByte(tag);
+            for (int value : values) {
+                pool.writeShort(value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int add(String key, int slots) {
+        int index = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xffff) {
+            throw new TooManyConstantsException();
+        }
+        constants.put(key, index);
+        return index;
+    }
+
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    Code addMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+        Code code = new Code(access, utf8(name), utf8(descriptor), maxStack, maxLocals);
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toByteArray() {
+        int thisIndex = classRef(className);
+        int superIndex = classRef(superName);
+        int codeIndex = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.resolve();
+                if (method.size() > MAX_CODE_SIZE) {
+                    throw new IllegalArgumentException("Code too large");
+                }
+                out.writeShort(method.access);
+                out.writeShort(method.name);
+                out.writeShort(method.descriptor);
+                out.writeShort(1);
+                out.writeShort(codeIndex);
+                out.writeInt(12 + method.size());
+                out.writeShort(method.maxStack);
+                out.writeShort(method.maxLocals);
+                out.writeInt(method.size());
+                out.write(method.code, 0, method.size());
+                out.writeShort(0);
+                out.writeShort(0);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A branch target inside a method.
+     */
+    /**
+     * Thrown when the constant pool of a class exceeds 65535 entries.
+     */
+    static class TooManyConstantsException extends IllegalArgumentException {
+
+        TooManyConstantsException() {
+            super("Too many constants for a single class");
+        }
+    }
+
+    static class Label {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>();
+    }
+
+    /**
+     * The byte code of a single method.
+     */
+    class Code {
+
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxStack;
+        private final int maxLocals;
+        private byte[] code = new byte[256];
+        private int length;
+        private final List<Label> labels = new ArrayList<>();
+
+        private Code(int access, int name, int descriptor, int maxStack, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        int size() {
+            return length;
+        }
+
+        Code op(int opcode) {
+            u1(opcode);
+            return this;
+        }
+
+        Code op(int opcode, int operand) {
+            u1(opcode);
+            u2(operand);
+            return this;
+        }
+
+        Code local(int opcode, int index) {
+            u1(opcode);
+            u1(index);
+            return this;
+        }
+
+        Code iinc(int index, int delta) {
+            u1(IINC);
+            u1(index);
+            u1(delta);
+            return this;
+        }
+
+        Code pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else if (value > 0 && value <= 2 * Short.MAX_VALUE + 1) {
+                // large table indexes, computed to keep the constant pool for strings
+                pushInt(value >> 1);
+                u1(ICONST_1);
+                u1(ISHL);
+                if ((value & 1) != 0) {
+                    u1(ICONST_1);
+                    u1(IADD);
+                }
+            } else {
+                ldc(integer(value));
+            }
+            return this;
+        }
+
+        Code pushLong(long value) {
+            if (value == 0) {
+                u1(LCONST_0);
+            } else if (value == 1) {
+                u1(LCONST_1);
+            } else {
+                op(LDC2_W, longConstant(value));
+            }
+            return this;
+        }
+
+        /**
+         * Pushes the class object of a class, e.g. <code>Foo.class</code>.
+         */
+        Code pushClass(String internalName) {
+            ldc(classRef(internalName));
+            return this;
+        }
+
+        /**
+         * Pushes a string, concatenating it at run time if it does not fit
+         * into a single constant.
+         */
+        Code pushString(String value) {
+            if (isConstant(value)) {
+                ldc(string(value));
+                return this;
+            }
+            String builder = "java/lang/StringBuilder";
+            op(NEW, classRef(builder)).op(DUP);
+            op(INVOKESPECIAL, methodRef(builder, "<init>", "()V"));
+            int chunk = MAX_CODE_SIZE / 3;
+            int start = 0;
+            while (start < value.length()) {
+                int end = Math.min(value.length(), start + chunk);
+                if (end < value.length() && Character.isHighSurrogate(value.charAt(end - 1))) {
+                    end--;
+                }
+                ldc(string(value.substring(start, end)));
+                op(INVOKEVIRTUAL, methodRef(builder, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;"));
+                start = end;
+            }
+            op(INVOKEVIRTUAL, methodRef(builder, "toString", "()Ljava/lang/String;"));
+            return this;
+        }
+
+        private void ldc(int index) {
+            if (index <= 0xff) {
+                u1(LDC);
+                u1(index);
+            } else {
+                op(LDC_W, index);
+            }
+        }
+
+        Code jump(int opcode, Label target) {
+            int position = length;
+            u1(opcode);
+            target.fixups.add(new int[]{position, length});
+            u2(0);
+            if (!labels.contains(target)) {
+                labels.add(target);
+            }
+            return this;
+        }
+
+        Code mark(Label label) {
+            label.position = length;
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            return this;
+        }
+
+        /**
+         * Writes a <code>tableswitch</code> for the keys <code>0..targets.length-1</code>.
+         */
+        Code tableSwitch(Label defaultTarget, Label[] targets) {
+            int position = length;
+            u1(TABLESWITCH);
+            while (length % 4 != 0) {
+                u1(0);
+            }
+            switchTarget(position, defaultTarget);
+            u4(0);
+            u4(targets.length - 1);
+            for (Label target : targets) {
+                switchTarget(position, target);
+            }
+            return this;
+        }
+
+        private void switchTarget(int position, Label target) {
+            // 4 byte offsets are marked with a negative instruction position
+            target.fixups.add(new int[]{-position - 1, length});
+            u4(0);
+            if (!labels.contains(target)) {
+                labels.add(target);
+            }
+        }
+
+        private void resolve() {
+            for (Label label : labels) {
+                if (label.position == -1) {
+                    throw new IllegalStateException("Unresolved label");
+                }
+                for (int[] fixup : label.fixups) {
+                    if (fixup[0] < 0) {
+                        int offset = label.position - (-fixup[0] - 1);
+                        code[fixup[1]] = (byte) (offset >>> 24);
+                        code[fixup[1] + 1] = (byte) (offset >>> 16);
+                        code[fixup[1] + 2] = (byte) (offset >>> 8);
+                        code[fixup[1] + 3] = (byte) offset;
+                    } else {
+                        int offset = label.position - fixup[0];
+                        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                            throw new IllegalArgumentException("Branch offset too large");
+                        }
+                        code[fixup[1]] = (byte) (offset >>> 8);
+                        code[fixup[1] + 1] = (byte) offset;
+                    }
+                }
+                label.fixups.clear();
+            }
+        }
+
+        private void u1(int value) {
+            if (length == code.length) {
+                byte[] copy = new byte[code.length * 2];
+                System.arraycopy(code, 0, copy, 0, length);
+                code = copy;
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+    }
+}
@@ -17,26 +17,42 @@ package org.xnap.commons.maven.gettext;
  */
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.xnap.commons.maven.gettext.runtime.CatalogResourceBundle;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Generates ressource bundles.
+ * <p>
+ * A bundle is only generated again if its po file, the options or the
+ * bundle itself have changed since the last build, as recorded in a
+ * manifest in <code>workDirectory</code>.
  *
  * @author Tammo van Lessen
  */
-@Mojo(name = "dist", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+@Mojo(name = "dist", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
 public class DistMojo
         extends AbstractGettextMojo {
 
@@ -59,13 +75,21 @@ public class DistMojo
     protected String targetBundle;
 
     /**
-     * Output format, can be "class", "properties", or "java".
+     * Output format, can be "class", "properties", "java" or "catalog".
+     * <p>
+     * "catalog" writes a binary catalog per locale and a small bundle class
+     * that memory-maps it and decodes messages only when they are looked up.
+     * The bundle classes extend
+     * <code>org.xnap.commons.maven.gettext.runtime.CatalogResourceBundle</code>,
+     * which is copied to the output directory as well.
      */
     @Parameter(property = "outputFormat", defaultValue = "class", required = true)
     protected String outputFormat;
 
     /**
-     * Java version. Can be "1" or "2".
+     * Java version. Can be "1" or "2". Only used by msgfmt, the
+     * <code>class</code> format with <code>inProcess</code> always generates
+     * the classes of <code>msgfmt --java2</code>.
      */
     @Parameter(property = "javaVersion", defaultValue = "2", required = true)
     protected String javaVersion;
@@ -88,88 +112,315 @@ public class DistMojo
     @Parameter(property = "encoding", defaultValue = "utf-8")
     protected String encoding;
 
+    /**
+     * Generate the bundles inside the plugin instead of launching msgfmt.
+     * Currently supported for the "class" output format, which then writes the
+     * class files directly instead of running msgfmt and javac for every locale,
+     * for the "java" output format, which then writes sources that look up
+     * messages in a minimal perfect hash table, and for the "properties" output
+     * format, which then writes the files like msgcat.
+     */
+    @Parameter(property = "inProcess", defaultValue = "false")
+    protected boolean inProcess;
+
+    /**
+     * Write properties files in UTF-8 instead of escaping non-ASCII characters.
+     * Java 9 and later read property resource bundles in UTF-8. Only used with
+     * <code>inProcess</code>.
+     */
+    @Parameter(property = "utf8Properties", defaultValue = "false")
+    protected boolean utf8Properties;
+
+    /**
+     * Number of classes to split every bundle into, for the "class" output
+     * format with <code>inProcess</code>. With more than one, the messages are
+     * distributed over shard classes like <code>Messages_de$Shard0</code> by
+     * the hash of their keys, and the bundle class loads a shard only when a
+     * key of it is first looked up. This keeps large catalogs below the
+     * limits of a class file and lets an application load only the
+     * messages it uses.
+     */
+    @Parameter(property = "classShards", defaultValue = "1")
+    protected int classShards;
+
     public void execute()
             throws MojoExecutionException {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(poDirectory);
+        ds.setIncludes(new String[]{"**/*.po"});
+        ds.scan();
+
+        String[] files = ds.getIncludedFiles();
+        // log in a stable order, independent of the file system
+        Arrays.sort(files);
+        execute(files);
+    }
+
+    /**
+     * Builds the bundles of some of the po files.
+     *
+     * @param files the paths of the po files, relative to <code>poDirectory</code>
+     */
+    void execute(String[] files)
+            throws MojoExecutionException {
+        final BuildMetrics metrics = new BuildMetrics("dist");
+        try (Session session = open()) {
+            List<TaskExecutor.Task> tasks = new ArrayList<>(files.length);
+            for (int i = 0; i < files.length; i++) {
+                final String fileName = files[i];
+                tasks.add(metrics.task(fileName, (log, fileMetrics) -> {
+                    log.info("Processing " + fileName);
+                    File inputFile = new File(poDirectory, fileName);
+                    // a project with the same poDirectory may merge it in parallel
+                    try (FileLocks.Lock lock = FileLocks.read(inputFile)) {
+                        session.generate(fileName, inputFile, null, null, log, fileMetrics);
+                    }
+                }));
+            }
+            TaskExecutor.execute(tasks, threads, getLog());
+        } finally {
+            metrics.write(metricsDirectory, executionId, getLog());
+        }
+    }
+
+    /**
+     * Starts building bundles: creates the output format and loads the
+     * manifest of the last build, which is locked and saved when the
+     * session is closed.
+     */
+    Session open()
+            throws MojoExecutionException {
 
         // create output directory if it doesn't exists
         outputDirectory.mkdirs();
 
-        CommandlineFactory cf = null;
-        if ("class".equals(outputFormat)) {
-            cf = new MsgFmtCommandlineFactory();
+        final BundleFormat format;
+        if ("class".equals(outputFormat) && inProcess) {
+            format = new ClassGeneratorFormat();
+        } else if ("class".equals(outputFormat)) {
+            format = new MsgFmtFormat();
+        } else if ("properties".equals(outputFormat) && inProcess) {
+            format = new PropertiesFormat();
         } else if ("properties".equals(outputFormat)) {
-            cf = new MsgCatCommandlineFactory();
+            format = new MsgCatFormat();
+        } else if ("java".equals(outputFormat) && inProcess) {
+            format = new JavaSourceFormat();
         } else if ("java".equals(outputFormat)) {
-            cf = new MsgFmtSourceCommandlineFactory();
+            format = new MsgFmtSourceFormat();
+        } else if ("catalog".equals(outputFormat)) {
+            format = new CatalogFormat();
+            copyRuntimeClass();
         } else
             throw new MojoExecutionException("Unknown output format: "
-                    + outputFormat + ". Should be 'class' or 'properties'.");
+                    + outputFormat + ". Should be 'class', 'properties', 'java' or 'catalog'.");
+        if (classShards < 1) {
+            throw new MojoExecutionException("classShards must be at least 1: " + classShards);
+        }
+        if (format instanceof ClassGeneratorFormat && !"2".equals(javaVersion)) {
+            getLog().warn("javaVersion " + javaVersion + " is not supported with inProcess, generating the "
+                    + "classes of msgfmt --java2.");
+        }
+        if (classShards > 1 && !(format instanceof ClassGeneratorFormat)) {
+            getLog().warn("classShards is only supported by the 'class' output format with inProcess, ignoring it.");
+        }
 
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(poDirectory);
-        ds.setIncludes(new String[]{"**/*.po"});
-        ds.scan();
+        File manifestFile = new File(workDirectory, "dist/" + targetBundle + ".properties");
+        // projects sharing the work directory may run in parallel
+        FileLocks.Lock lock = FileLocks.write(manifestFile);
+        try {
+            return new Session(format, loadManifest(manifestFile), lock);
+        } catch (RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
 
-        String[] files = ds.getIncludedFiles();
-        for (int i = 0; i < files.length; i++) {
-            getLog().info("Processing " + files[i]);
+    /**
+     * Builds the bundles of single po files with the same format and
+     * manifest. Files can be processed concurrently.
+     */
+    class Session implements AutoCloseable {
+
+        private final BundleFormat format;
+        private final FingerprintStore manifest;
+        private final FileLocks.Lock lock;
+
+        private Session(BundleFormat format, FingerprintStore manifest, FileLocks.Lock lock) {
+            this.format = format;
+            this.manifest = manifest;
+            this.lock = lock;
+        }
+
+        /**
+         * Builds the bundle of a po file unless it is up to date.
+         *
+         * @param fingerprint the hash of the path and content of the po file, as
+         *                    {@link GettextUtils#sha256(String, byte[])} computes it with '/'
+         *                    as separator, if it has been read already, or <code>null</code>
+         * @param entries the messages of the po file if they have been read already, or <code>null</code>
+         */
+        void generate(String fileName, File inputFile, String fingerprint, List<PoEntry> entries, Log log,
+                BuildMetrics.Record fileMetrics) throws MojoExecutionException {
+            DistMojo.this.generate(fileName, inputFile, fingerprint, entries, format, manifest, log, fileMetrics);
+        }
+
+        @Override
+        public void close() {
             try {
-                cf.init();
+                manifest.save();
             } catch (IOException e) {
-                getLog().error("Unable to prepare for processing " + files[i], e);
-                throw new IllegalStateException("Unable to prepare for processing " + files[i], e);
+                getLog().warn("Could not save the dist manifest: " + e.getMessage());
+            } finally {
+                lock.close();
             }
+        }
+    }
 
-            File inputFile = new File(poDirectory, files[i]);
-            File outputFile = cf.getOutputFile(inputFile);
+    private void generate(String fileName, File inputFile, String fingerprint, List<PoEntry> entries,
+            BundleFormat format, FingerprintStore manifest, Log log, BuildMetrics.Record fileMetrics)
+            throws MojoExecutionException {
+        if (fingerprint == null) {
+            fileMetrics.read(inputFile);
+        }
+        File outputFile = format.getOutputFile(inputFile);
+        String key = fileName.replace(File.separatorChar, '/');
+        String input;
+        try {
+            input = fingerprint != null ? fingerprint : GettextUtils.sha256(key, inputFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + inputFile, e);
+        }
+        List<File> outputFiles = format.getOutputFiles(inputFile);
+        String output = StringUtils.join(outputFiles.iterator(), File.pathSeparator);
+        if (manifest.matches("input." + key, input) && manifest.matches("output." + key, output)
+                && allFilesExist(outputFiles)) {
+            log.info("Not compiling, target is up-to-date: " + outputFile);
+            fileMetrics.setStatus(BuildMetrics.SKIPPED);
+            return;
+        }
+        manifest.remove("input." + key);
+        format.generate(inputFile, entries, outputFile, log, fileMetrics);
+        if (allFilesExist(outputFiles)) {
+            manifest.put("input." + key, input);
+            manifest.put("output." + key, output);
+        } else {
+            fileMetrics.setStatus(BuildMetrics.FAILED);
+        }
+    }
 
-            if (!isNewer(inputFile, outputFile)) {
-                getLog().info("Not compiling, target is up-to-date: " + outputFile);
-                continue;
-            }
+    /**
+     * Loads the manifest of the last build, which records the hash of every
+     * po file and the bundle written for it. It is discarded if any option
+     * that affects the bundles has changed since.
+     */
+    private FingerprintStore loadManifest(File manifestFile) {
+        FingerprintStore manifest = FingerprintStore.load(manifestFile);
+        String options = GettextUtils.sha256(outputDirectory.getAbsolutePath(), targetBundle, outputFormat,
+                javaVersion, String.valueOf(escapeUnicode), encoding, String.valueOf(inProcess), String.valueOf(utf8Properties),
+                String.valueOf(classShards), msgfmtCmd,
+                msgcatCmd, extraArgs == null ? "" : StringUtils.join(extraArgs, "\0"));
+        if (!manifest.matches("options", options)) {
+            manifest.clear();
+            manifest.put("options", options);
+        }
+        return manifest;
+    }
 
-            Commandline cl = cf.createCommandline(inputFile);
-            for (String arg : extraArgs) {
-                cl.createArg().setValue(arg);
+    private static boolean allFilesExist(List<File> files) {
+        for (File file : files) {
+            if (!file.isFile()) {
+                return false;
             }
-            getLog().debug("Executing: " + cl.toString());
-            StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-            StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
-            try {
-                CommandLineUtils.executeCommandLine(cl, out, err);
-            } catch (CommandLineException e) {
-                getLog().error("Could not execute " + cl.getExecutable() + ".", e);
-            }
-            try {
-                cf.finish();
-            } catch (IOException e) {
-                getLog().error("Unable to process file " + files[i], e);
-                throw new IllegalStateException("Unable to process file " + files[i], e);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the class of the bundles' common super class to the output
+     * directory, so catalog bundles work without a dependency on this
+     * plugin.
+     */
+    private void copyRuntimeClass() throws MojoExecutionException {
+        String name = CatalogResourceBundle.class.getName().replace('.', '/') + ".class";
+        File target = new File(outputDirectory, name.replace('/', File.separatorChar));
+        try (InputStream in = CatalogResourceBundle.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new MojoExecutionException("Unable to find " + name);
             }
-            if (!escapeUnicode && "java".equals(outputFormat)) {
-                GettextUtils.unescapeUnicode(outputFile, encoding, getLog());
+            GettextUtils.writeIfChanged(target, in.readAllBytes());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + target, e);
+        }
+    }
+
+    /**
+     * Writes a generated file unless it has not changed.
+     */
+    private static void write(File file, byte[] content, BuildMetrics.Record fileMetrics)
+            throws MojoExecutionException {
+        try {
+            if (GettextUtils.writeIfChanged(file, content)) {
+                fileMetrics.written(file);
             }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + file, e);
         }
     }
 
-    private boolean isNewer(File inputFile, File outputFile) {
-        return inputFile.lastModified() > outputFile.lastModified();
+    protected String getLocale(File file) {
+        String locale = file.getName().substring(0, file.getName().lastIndexOf('.'));
+        return GettextUtils.getJavaLocale(locale);
+    }
+
+    private void execute(Commandline cl, Log log, BuildMetrics.Record fileMetrics) {
+        for (String arg : extraArgs) {
+            cl.createArg().setValue(arg);
+        }
+        log.debug("Executing: " + cl.toString());
+        StreamConsumer out = new LoggerStreamConsumer(log, LoggerStreamConsumer.INFO);
+        StreamConsumer err = new LoggerStreamConsumer(log, LoggerStreamConsumer.WARN);
+        try {
+            if (fileMetrics.run(cl, out, err) != 0) {
+                fileMetrics.setStatus(BuildMetrics.FAILED);
+            }
+        } catch (CommandLineException e) {
+            fileMetrics.setStatus(BuildMetrics.FAILED);
+            log.error("Could not execute " + cl.getExecutable() + ".", e);
+        }
     }
 
-    private interface CommandlineFactory {
-        Commandline createCommandline(File file);
+    /**
+     * Writes the resource bundle of a single po file. Implementations keep
+     * no state between files, so different files can be processed
+     * concurrently.
+     */
+    private interface BundleFormat {
 
         /**
-         * @return the output file of this command
+         * @return the output file for the po file <code>input</code>
          */
         File getOutputFile(File input);
 
-        void init() throws IOException;
+        /**
+         * @return all files written for the po file <code>input</code>
+         */
+        default List<File> getOutputFiles(File input) {
+            return Collections.singletonList(getOutputFile(input));
+        }
 
-        void finish() throws IOException;
+        /**
+         * Writes the output files, but only replaces those whose content has
+         * changed, which are recorded in <code>fileMetrics</code>.
+         *
+         * @param entries the messages of <code>input</code> if they have been
+         *                read already, or <code>null</code>; formats that run
+         *                a gettext tool always read the file
+         */
+        void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException;
     }
 
-    private class MsgFmtCommandlineFactory implements CommandlineFactory {
+    private class MsgFmtFormat implements BundleFormat {
 
         protected String outputExtension() {
             return ".class";
@@ -180,16 +431,23 @@ public class DistMojo
             return new File(outputDirectory, targetBundle.replace('.', File.separatorChar) + "_" + locale + outputExtension());
         }
 
-        private String getLocale(File file) {
-            String locale = file.getName().substring(0, file.getName().lastIndexOf('.'));
-            return GettextUtils.getJavaLocale(locale);
-        }
-
-        protected File getOutputDirectory() {
-            return outputDirectory;
+        /**
+         * The classes <code>msgfmt --java2</code> compiles include the
+         * anonymous <code>Enumeration</code> of <code>getKeys()</code>,
+         * <code>--java</code> does not generate one.
+         */
+        @Override
+        public List<File> getOutputFiles(File input) {
+            File output = getOutputFile(input);
+            if (!".class".equals(outputExtension()) || !"2".equals(javaVersion)) {
+                return Collections.singletonList(output);
+            }
+            String name = output.getName();
+            return Arrays.asList(output,
+                    new File(output.getParentFile(), name.substring(0, name.lastIndexOf('.')) + "$1.class"));
         }
 
-        public Commandline createCommandline(File file) {
+        protected Commandline createCommandline(File file, File outputDirectory) {
             Commandline cl = new Commandline();
             cl.setExecutable(msgfmtCmd);
 
@@ -200,7 +458,7 @@ public class DistMojo
             }
 
             cl.createArg().setValue("-d");
-            cl.createArg().setFile(getOutputDirectory());
+            cl.createArg().setFile(outputDirectory);
             cl.createArg().setValue("-r");
             cl.createArg().setValue(targetBundle);
             cl.createArg().setValue("-l");
@@ -209,17 +467,157 @@ public class DistMojo
             return cl;
         }
 
+        /**
+         * Runs msgfmt in a temporary directory of its own and copies every
+         * file it generated to the output directory if it has changed.
+         */
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            File tmpOutDir;
+            try {
+                tmpOutDir = Files.createTempDirectory("msgfmt-" + getLocale(input)).toFile();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to create temp directory", e);
+            }
+            try {
+                execute(createCommandline(input, tmpOutDir), log, fileMetrics);
+                List<Path> generated;
+                try (Stream<Path> files = Files.walk(tmpOutDir.toPath())) {
+                    generated = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : generated) {
+                    File target = new File(outputDirectory, tmpOutDir.toPath().relativize(file).toString());
+                    copy(file.toFile(), target, log, fileMetrics);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to process file " + input, e);
+            } finally {
+                try {
+                    FileUtils.deleteDirectory(tmpOutDir);
+                } catch (IOException e) {
+                    log.warn("Unable to delete " + tmpOutDir);
+                }
+            }
+        }
+
+        protected void copy(File generated, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws IOException, MojoExecutionException {
+            if (GettextUtils.copyIfChanged(generated, output)) {
+                fileMetrics.written(output);
+            }
+        }
+    }
+
+    private class ClassGeneratorFormat extends MsgFmtFormat {
+
+        private File getShardFile(File output, int shard) {
+            String name = output.getName();
+            return new File(output.getParentFile(), name.substring(0, name.lastIndexOf('.')) + "$Shard" + shard
+                    + outputExtension());
+        }
+
+        @Override
+        public List<File> getOutputFiles(File input) {
+            File output = getOutputFile(input);
+            if (classShards == 1) {
+                return Collections.singletonList(output);
+            }
+            List<File> files = new ArrayList<>(classShards + 1);
+            files.add(output);
+            for (int i = 0; i < classShards; i++) {
+                files.add(getShardFile(output, i));
+            }
+            return files;
+        }
+
+        @Override
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            String className = targetBundle + "_" + getLocale(input);
+            ResourceBundleClassGenerator generator = new ResourceBundleClassGenerator(className, getMessageKeys());
+            generator.setShards(classShards);
+            byte[] bytes;
+            try {
+                if (entries == null) {
+                    generator.addAll(input);
+                } else {
+                    generator.addAll(entries);
+                }
+                bytes = generator.generate();
+                if (classShards > 1) {
+                    for (int i = 0; i < classShards; i++) {
+                        write(getShardFile(output, i), generator.generateShard(i), fileMetrics);
+                    }
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + input, e);
+            } catch (ClassFileWriter.TooManyConstantsException e) {
+                throw new MojoExecutionException("The messages of " + input + " do not fit into "
+                        + (classShards == 1 ? "a single class" : classShards + " classes") + ", set classShards to "
+                        + Math.max(classShards + 1, generator.getRequiredShards()) + " or more", e);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Unable to generate " + className + " from " + input + ": "
+                        + e.getMessage(), e);
+            }
+            // the bundle is written last, so it never refers to shards that do not exist yet
+            write(output, bytes, fileMetrics);
+            // remove the shards of an earlier build with more shards
+            int stale = classShards == 1 ? 0 : classShards;
+            while (getShardFile(output, stale).delete()) {
+                stale++;
+            }
+        }
+    }
+
+    /**
+     * Writes a binary catalog and a bundle class that loads it for every po
+     * file.
+     */
+    private class CatalogFormat extends MsgFmtFormat {
+
+        private File getCatalogFile(File input) {
+            File output = getOutputFile(input);
+            String name = output.getName();
+            return new File(output.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".catalog");
+        }
+
         @Override
-        public void init() throws IOException {
+        public List<File> getOutputFiles(File input) {
+            return Arrays.asList(getOutputFile(input), getCatalogFile(input));
         }
 
         @Override
-        public void finish() throws IOException {
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            String className = targetBundle + "_" + getLocale(input);
+            File catalogFile = getCatalogFile(input);
+            CatalogWriter writer = new CatalogWriter(getMessageKeys());
+            byte[] catalog;
+            byte[] bundle;
+            try {
+                if (entries == null) {
+                    writer.addAll(input);
+                } else {
+                    writer.addAll(entries);
+                }
+                catalog = writer.toByteArray();
+                bundle = writer.generateClass(className, catalogFile.getName());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + input, e);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Unable to generate " + className + " from " + input + ": "
+                        + e.getMessage(), e);
+            }
+            write(catalogFile, catalog, fileMetrics);
+            write(output, bundle, fileMetrics);
         }
     }
 
-    private class MsgFmtSourceCommandlineFactory extends MsgFmtCommandlineFactory {
-        private File tmpOutDir;
+    /**
+     * Writes the source of a bundle class with a perfect hash lookup for
+     * every po file.
+     */
+    private class JavaSourceFormat extends MsgFmtFormat {
 
         @Override
         protected String outputExtension() {
@@ -227,37 +625,74 @@ public class DistMojo
         }
 
         @Override
-        public void init() throws IOException {
-            super.init();
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            String className = targetBundle + "_" + getLocale(input);
+            ResourceBundleSourceGenerator generator = new ResourceBundleSourceGenerator(className, getMessageKeys());
+            Charset charset;
+            try {
+                charset = Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Unsupported encoding: " + encoding, e);
+            }
+            String source;
             try {
-                tmpOutDir = Files.createTempDirectory(msgfmtCmd + sourceLocale).toFile();
+                if (entries == null) {
+                    generator.addAll(input);
+                } else {
+                    generator.addAll(entries);
+                }
+                source = generator.generate(escapeUnicode ? null : charset.newEncoder());
             } catch (IOException e) {
-                getLog().error("Unable to create temp directory", e);
-                throw new IllegalStateException("Unable to create temp directory", e);
+                throw new MojoExecutionException("Unable to read " + input, e);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Unable to generate " + className + " from " + input + ": "
+                        + e.getMessage(), e);
             }
+            write(output, source.getBytes(charset), fileMetrics);
         }
+    }
+
+    /**
+     * Runs msgfmt with <code>--source</code> and copies the generated
+     * source to the output directory, unescaping it unless
+     * <code>escapeUnicode</code> is set.
+     */
+    private class MsgFmtSourceFormat extends MsgFmtFormat {
 
         @Override
-        protected File getOutputDirectory() {
-            return tmpOutDir;
+        protected String outputExtension() {
+            return ".java";
         }
 
         @Override
-        public Commandline createCommandline(File file) {
-            Commandline cl = super.createCommandline(file);
+        protected Commandline createCommandline(File file, File outputDirectory) {
+            Commandline cl = super.createCommandline(file, outputDirectory);
             cl.createArg().setValue("--source");
             return cl;
         }
 
         @Override
-        public void finish() throws IOException {
-            getLog().debug("Copying java files from " + getOutputDirectory() + " to " + super.getOutputDirectory());
-            FileUtils.copyDirectoryStructure(getOutputDirectory(), super.getOutputDirectory());
-            FileUtils.deleteDirectory(getOutputDirectory());
+        protected void copy(File generated, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws IOException, MojoExecutionException {
+            if (escapeUnicode) {
+                super.copy(generated, output, log, fileMetrics);
+                return;
+            }
+            // unescape while copying, so the source is written once
+            File tmpFile = GettextUtils.createTempFile(output);
+            try {
+                GettextUtils.unescapeUnicode(generated, tmpFile, encoding, log);
+                if (GettextUtils.replaceIfChanged(tmpFile, output)) {
+                    fileMetrics.written(output);
+                }
+            } finally {
+                tmpFile.delete();
+            }
         }
     }
 
-    private class MsgCatCommandlineFactory implements CommandlineFactory {
+    private class MsgCatFormat implements BundleFormat {
 
         public File getOutputFile(File input) {
             String basepath = targetBundle.replace('.', File.separatorChar);
@@ -267,32 +702,84 @@ public class DistMojo
             return target;
         }
 
-        public Commandline createCommandline(File file) {
-            Commandline cl = new Commandline();
-
-            File outputFile = getOutputFile(file);
-            File parent = outputFile.getParentFile();
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            File parent = output.getParentFile();
             if (!parent.exists()) {
                 parent.mkdirs();
             }
 
+            File tmpFile;
+            try {
+                tmpFile = GettextUtils.createTempFile(output);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + output, e);
+            }
+
+            Commandline cl = new Commandline();
             cl.setExecutable(msgcatCmd);
 
             cl.createArg().setValue("--no-location");
             cl.createArg().setValue("-p");
-            cl.createArg().setFile(file);
+            cl.createArg().setFile(input);
             cl.createArg().setValue("-o");
-            cl.createArg().setFile(outputFile);
+            cl.createArg().setFile(tmpFile);
 
-            return cl;
+            try {
+                execute(cl, log, fileMetrics);
+                if (tmpFile.isFile() && GettextUtils.replaceIfChanged(tmpFile, output)) {
+                    fileMetrics.written(output);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + output, e);
+            } finally {
+                tmpFile.delete();
+            }
         }
+    }
 
-        @Override
-        public void init() throws IOException {
-        }
+    /**
+     * Writes the properties files without running msgcat.
+     */
+    private class PropertiesFormat extends MsgCatFormat {
 
         @Override
-        public void finish() {
+        public void generate(File input, List<PoEntry> entries, File output, Log log, BuildMetrics.Record fileMetrics)
+                throws MojoExecutionException {
+            int skipped = 0;
+            File tmpFile;
+            try {
+                tmpFile = GettextUtils.createTempFile(output);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + output, e);
+            }
+            try {
+                try (PropertiesWriter writer = new PropertiesWriter(new FileOutputStream(tmpFile), utf8Properties)) {
+                    if (entries == null) {
+                        try (PoReader reader = new PoReader(input)) {
+                            PoEntry entry;
+                            while ((entry = reader.next()) != null) {
+                                skipped += writer.write(entry) ? 0 : 1;
+                            }
+                        }
+                    } else {
+                        for (PoEntry entry : entries) {
+                            skipped += writer.write(entry) ? 0 : 1;
+                        }
+                    }
+                }
+                if (GettextUtils.replaceIfChanged(tmpFile, output)) {
+                    fileMetrics.written(output);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + output, e);
+            } finally {
+                tmpFile.delete();
+            }
+            if (skipped > 0) {
+                log.warn("Skipped " + skipped + " messages with plural forms in " + input.getName()
+                        + ", properties files do not support them");
+            }
         }
     }
 
@@ -0,0 +1,156 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Caches the messages extracted from each source file, keyed by a hash of
+ * the file's path and contents. Each entry is stored as a small UTF-8 POT
+ * fragment, the template header of the last extraction is kept in
+ * <code>header.pot</code>.
+ */
+class ExtractionCache {
+
+    private static final String OPTIONS = "options";
+    private static final String HEADER_FILE = "header.pot";
+    private static final String SUFFIX = ".pot";
+
+    private final File directory;
+    private final FingerprintStore store;
+
+    /**
+     * Opens the cache in <code>directory</code>. All cached messages are
+     * discarded if they were extracted with different options.
+     */
+    ExtractionCache(File directory, String options, Log log) {
+        this.directory = directory;
+        this.store = FingerprintStore.load(new File(directory, "cache.properties"));
+        if (!store.matches(OPTIONS, options)) {
+            if (store.get(OPTIONS) != null) {
+                log.info("Extraction options have changed, discarding cached messages.");
+            }
+            deleteFragments(null);
+            store.clear();
+            store.put(OPTIONS, options);
+        }
+    }
+
+    boolean contains(String key) {
+        return new File(directory, key + SUFFIX).isFile();
+    }
+
+    /**
+     * Adds the cached messages of a source file to a catalog.
+     */
+    void readInto(String key, MessageCatalog catalog) throws IOException {
+        try (PoReader reader = new PoReader(new File(directory, key + SUFFIX))) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (!entry.isHeader()) {
+                    catalog.add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the messages of a source file. Files without messages are
+     * stored as well, so they are not extracted again.
+     */
+    void store(String key, List<PoEntry> entries) throws IOException {
+        PoEntry header = new PoEntry();
+        header.setMsgid("");
+        header.setMsgstr("Content-Type: text/plain; charset=UTF-8\n");
+        entries.add(0, header);
+        write(new File(directory, key + SUFFIX), entries);
+    }
+
+    /**
+     * @return the template header of the last extraction or <code>null</code>
+     */
+    PoEntry loadHeader() throws IOException {
+        File file = new File(directory, HEADER_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (PoReader reader = new PoReader(file)) {
+            PoEntry entry = reader.next();
+            return entry != null && entry.isHeader() ? entry : null;
+        }
+    }
+
+    void storeHeader(PoEntry header) throws IOException {
+        File file = new File(directory, HEADER_FILE);
+        if (header == null) {
+            file.delete();
+        } else {
+            write(file, Collections.singletonList(header));
+        }
+    }
+
+    /**
+     * Deletes the cached messages of all files that are not in
+     * <code>keys</code> and saves the cache state.
+     */
+    void retainAndSave(Set<String> keys) throws IOException {
+        deleteFragments(keys);
+        store.save();
+    }
+
+    /**
+     * Forgets the options, so the next build extracts all files again.
+     */
+    void invalidate() throws IOException {
+        store.clear();
+        store.save();
+    }
+
+    private void deleteFragments(Set<String> keep) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX) && !name.equals(HEADER_FILE)
+                    && (keep == null || !keep.contains(name.substring(0, name.length() - SUFFIX.length())))) {
+                file.delete();
+            }
+        }
+    }
+
+    private static void write(File file, List<PoEntry> entries) throws IOException {
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            PoWriter writer = new PoWriter(out, StandardCharsets.UTF_8, 0);
+            for (PoEntry entry : entries) {
+                writer.write(entry);
+            }
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read and write locks on files, shared by all goal executions of a build.
+ * In parallel builds the projects of a reactor run in threads of the same
+ * JVM and share the plugin's classes, so these locks keep goals of
+ * different projects from rewriting a file another one is reading or
+ * writing, e.g. the po files of a shared <code>poDirectory</code>.
+ * <p>
+ * To avoid deadlocks, locks are taken in this order: files in
+ * <code>workDirectory</code>, po files, templates.
+ */
+final class FileLocks {
+
+    private static final ConcurrentMap<String, ReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * A held lock, released by {@link #close()}.
+     */
+    interface Lock extends AutoCloseable {
+        void close();
+    }
+
+    private FileLocks() {
+    }
+
+    /**
+     * Blocks until no other thread writes the file.
+     */
+    static Lock read(File file) {
+        return acquire(get(file).readLock());
+    }
+
+    /**
+     * Blocks until no other thread reads or writes the file.
+     */
+    static Lock write(File file) {
+        return acquire(get(file).writeLock());
+    }
+
+    private static ReadWriteLock get(File file) {
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        return LOCKS.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+    }
+
+    private static Lock acquire(java.util.concurrent.locks.Lock lock) {
+        lock.lock();
+        return lock::unlock;
+    }
+}
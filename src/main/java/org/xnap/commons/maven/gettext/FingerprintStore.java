@@ -0,0 +1,108 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * A small key/value file that remembers content hashes and options of a
+ * previous build, used to skip work whose inputs have not changed.
+ * <p>
+ * Access is synchronized, so worker threads can record their results
+ * directly.
+ */
+class FingerprintStore {
+
+    private final File file;
+    private final Map<String, String> values = new TreeMap<>();
+
+    private FingerprintStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads a store. A missing or unreadable file results in an empty store.
+     */
+    static FingerprintStore load(File file) {
+        FingerprintStore store = new FingerprintStore(file);
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                properties.load(in);
+                for (String name : properties.stringPropertyNames()) {
+                    store.values.put(name, properties.getProperty(name));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                store.values.clear();
+            }
+        }
+        return store;
+    }
+
+    synchronized String get(String key) {
+        return values.get(key);
+    }
+
+    synchronized boolean matches(String key, String value) {
+        return value != null && value.equals(values.get(key));
+    }
+
+    synchronized void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    synchronized void remove(String key) {
+        values.remove(key);
+    }
+
+    synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * Writes the store with sorted keys and without a time stamp, unless
+     * the file has that content already.
+     */
+    synchronized void save() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (Writer w = new OutputStreamWriter(os, StandardCharsets.ISO_8859_1)) {
+            Properties escaper = new Properties();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                // let Properties do the escaping, one entry at a time
+                escaper.clear();
+                escaper.setProperty(entry.getKey(), entry.getValue());
+                StringWriter line = new StringWriter();
+                escaper.store(line, null);
+                String text = line.toString();
+                // skip the date comment
+                w.write(text.substring(text.indexOf('\n') + 1));
+            }
+        }
+        GettextUtils.writeIfChanged(file, os.toByteArray());
+    }
+}
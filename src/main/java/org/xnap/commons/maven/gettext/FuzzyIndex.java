@@ -0,0 +1,234 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the messages whose id is similar to a given one, for fuzzy
+ * matching like msgmerge.
+ * <p>
+ * The similarity of two ids is that of gettext's <code>fstrcmp</code>:
+ * twice the length of their longest common subsequence of UTF-8 bytes,
+ * divided by their total length. It is computed with a bit-parallel
+ * algorithm, so a comparison takes a few operations per byte. Only messages
+ * that share a byte trigram with the searched id are compared, except for
+ * short ids, which are compared with all messages of a suitable length.
+ * <p>
+ * Messages are added first, possibly from several threads; the first
+ * search builds the trigram index, after which no messages may be added.
+ */
+class FuzzyIndex {
+
+    /**
+     * msgmerge's <code>FUZZY_THRESHOLD</code>: messages must be more
+     * similar than this to be proposed.
+     */
+    static final double THRESHOLD = 0.6;
+
+    /**
+     * Ids shorter than this may be similar to ids they share no trigram
+     * with, so they are compared with all messages.
+     */
+    private static final int SHORT_LENGTH = 12;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> msgctxts = new ArrayList<>();
+    private final List<byte[]> msgids = new ArrayList<>();
+    private Map<Integer, int[]> trigrams;
+
+    /**
+     * A message similar to the searched one.
+     */
+    static class Match {
+
+        final String key;
+        final double weight;
+
+        Match(String key, double weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Adds a message, unless a message with the same context and id has
+     * been added before.
+     */
+    synchronized void add(PoEntry entry) {
+        if (trigrams != null) {
+            throw new IllegalStateException("Messages cannot be added after searching");
+        }
+        String key = entry.getKey();
+        if (!ids.containsKey(key)) {
+            ids.put(key, keys.size());
+            keys.add(key);
+            msgctxts.add(entry.getMsgctxt());
+            msgids.add(entry.getMsgid().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns all messages more similar to the given one than
+     * {@link #THRESHOLD}, the most similar first. Like msgmerge, messages
+     * without a context or with the same context get a small advantage.
+     */
+    List<Match> search(String msgctxt, String msgid) {
+        buildIndex();
+        byte[] query = msgid.getBytes(StandardCharsets.UTF_8);
+        List<Match> matches = new ArrayList<>();
+        if (query.length == 0) {
+            return matches;
+        }
+        LcsPattern pattern = new LcsPattern(query);
+        if (query.length < SHORT_LENGTH) {
+            for (int i = 0; i < msgids.size(); i++) {
+                addIfSimilar(i, pattern, msgctxt, matches);
+            }
+        } else {
+            boolean[] seen = new boolean[msgids.size()];
+            for (int i = 0; i + 2 < query.length; i++) {
+                int[] postings = trigrams.get(trigram(query, i));
+                if (postings == null) {
+                    continue;
+                }
+                for (int id : postings) {
+                    if (!seen[id]) {
+                        seen[id] = true;
+                        addIfSimilar(id, pattern, msgctxt, matches);
+                    }
+                }
+            }
+        }
+        // messages with the same weight stay in the order they were added in, which depends on the
+        // threads adding them, so callers break ties themselves
+        matches.sort((a, b) -> Double.compare(b.weight, a.weight));
+        return matches;
+    }
+
+    private void addIfSimilar(int id, LcsPattern pattern, String msgctxt, List<Match> matches) {
+        byte[] candidate = msgids.get(id);
+        int total = pattern.length + candidate.length;
+        // the common subsequence is at most as long as the shorter id
+        if (2.0 * Math.min(pattern.length, candidate.length) / total <= THRESHOLD) {
+            return;
+        }
+        double weight = 2.0 * pattern.lcs(candidate) / total;
+        if (weight > THRESHOLD) {
+            String context = msgctxts.get(id);
+            if (context == null || context.equals(msgctxt)) {
+                weight += 0.00001;
+            }
+            matches.add(new Match(keys.get(id), weight));
+        }
+    }
+
+    private synchronized void buildIndex() {
+        if (trigrams != null) {
+            return;
+        }
+        Map<Integer, int[]> index = new HashMap<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (int id = 0; id < msgids.size(); id++) {
+            byte[] msgid = msgids.get(id);
+            for (int i = 0; i + 2 < msgid.length; i++) {
+                int trigram = trigram(msgid, i);
+                int[] postings = index.get(trigram);
+                int size = postings == null ? 0 : sizes.get(trigram);
+                if (size > 0 && postings[size - 1] == id) {
+                    continue;
+                }
+                if (postings == null || size == postings.length) {
+                    postings = postings == null ? new int[4] : Arrays.copyOf(postings, size * 2);
+                    index.put(trigram, postings);
+                }
+                postings[size] = id;
+                sizes.put(trigram, size + 1);
+            }
+        }
+        for (Map.Entry<Integer, int[]> entry : index.entrySet()) {
+            entry.setValue(Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey())));
+        }
+        trigrams = index;
+    }
+
+    private static int trigram(byte[] s, int i) {
+        return (s[i] & 0xff) << 16 | (s[i + 1] & 0xff) << 8 | (s[i + 2] & 0xff);
+    }
+
+    /**
+     * Computes the length of the longest common subsequence of a fixed
+     * string and others with the bit-vector algorithm of Hyyr&ouml;.
+     */
+    static class LcsPattern {
+
+        final int length;
+        private final int words;
+        private final long[][] masks = new long[256][];
+        private final long[] v;
+
+        LcsPattern(byte[] pattern) {
+            length = pattern.length;
+            words = (length + 63) >>> 6;
+            for (int i = 0; i < length; i++) {
+                int c = pattern[i] & 0xff;
+                if (masks[c] == null) {
+                    masks[c] = new long[words];
+                }
+                masks[c][i >>> 6] |= 1L << (i & 63);
+            }
+            v = new long[words];
+        }
+
+        int lcs(byte[] s) {
+            Arrays.fill(v, -1L);
+            for (byte b : s) {
+                long[] mask = masks[b & 0xff];
+                if (mask == null) {
+                    continue;
+                }
+                // v = (v + u) | (v & ~mask) with u = v & mask, carried across words
+                long carry = 0;
+                for (int w = 0; w < words; w++) {
+                    long u = v[w] & mask[w];
+                    long sum = v[w] + u + carry;
+                    carry = Long.compareUnsigned(sum, v[w]) < 0 || carry != 0 && sum == v[w] ? 1 : 0;
+                    v[w] = sum | (v[w] & ~mask[w]);
+                }
+            }
+            int zeros = 0;
+            for (int w = 0; w < words; w++) {
+                long bits = v[w];
+                if (w == words - 1 && (length & 63) != 0) {
+                    bits |= -1L << (length & 63);
+                }
+                zeros += Long.bitCount(~bits);
+            }
+            return zeros;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.xnap.commons.maven.gettext;
 
 import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -25,7 +26,6 @@ import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
@@ -33,14 +33,18 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Invokes xgettext to extract messages from source code and store them in the keys.pot file.
  */
-@Mojo(name = "gettext", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+@Mojo(name = "gettext", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
 public class GettextMojo
         extends AbstractGettextMojo {
 
@@ -94,29 +98,148 @@ public class GettextMojo
     @Parameter(property = "extraSourceFiles")
     protected FileSet extraSourceFiles;
 
+    /**
+     * Only run xgettext on source files that are new or changed since the
+     * last build. The messages of all other files are taken from a cache in
+     * <code>workDirectory</code>, which is discarded whenever
+     * <code>keywords</code>, <code>encoding</code> or <code>extraArgs</code>
+     * change.
+     */
+    @Parameter(property = "incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    /**
+     * Extract messages with the plugin's own Java parser instead of running
+     * xgettext, using several threads. Only Java sources are supported. Of
+     * the <code>extraArgs</code>, <code>--no-location</code>,
+     * <code>--omit-header</code>, <code>--add-comments</code>,
+     * <code>--package-name</code>, <code>--package-version</code>,
+     * <code>--msgid-bugs-address</code>, <code>--copyright-holder</code>,
+     * <code>--width</code> and <code>--no-wrap</code> are honored, all
+     * others are ignored. <code>incremental</code> has no effect in this
+     * mode.
+     */
+    @Parameter(property = "inProcess", defaultValue = "false")
+    protected boolean inProcess;
+
+    /**
+     * Split the source files among this many xgettext processes, which run
+     * concurrently on up to <code>threads</code> threads. The shards are
+     * contiguous ranges of the file list of about the same size, and their
+     * templates are merged into the template a single xgettext process
+     * would write. Also applies to the changed files of
+     * <code>incremental</code> runs, but not to <code>inProcess</code>.
+     */
+    @Parameter(property = "shards", defaultValue = "1")
+    protected int shards;
+
+    private BuildMetrics metrics;
+
     public void execute()
             throws MojoExecutionException {
-        getLog().info("Invoking xgettext for Java files in '"
-                + sourceDirectory.getAbsolutePath() + "'.");
+        metrics = new BuildMetrics("gettext");
+        File messagesPotFile = new File(poDirectory, keysFile);
+        // projects sharing the template or the work directory may run in parallel
+        try (FileLocks.Lock cacheLock = FileLocks.write(getCacheDirectory());
+             FileLocks.Lock potLock = FileLocks.write(messagesPotFile)) {
+            // the template is written next to the old one and only replaces it if it has
+            // changed, so unchanged builds do not touch the files of the later goals
+            File tmpFile;
+            try {
+                tmpFile = GettextUtils.createTempFile(messagesPotFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + messagesPotFile, e);
+            }
+            try {
+                List<String> sourceFiles = getSourceFiles();
+                if (inProcess) {
+                    getLog().info("Extracting messages from Java files in " + describeSourceRoots() + ".");
+                    extractInProcess(sourceFiles, tmpFile);
+                } else {
+                    getLog().info("Invoking xgettext for Java files in " + describeSourceRoots() + ".");
+                    if (!incremental || !extractIncrementally(sourceFiles, tmpFile)) {
+                        if (extract(sourceFiles, tmpFile, false)) {
+                            metrics.addProcessed(sourceFiles.size());
+                            for (String path : sourceFiles) {
+                                metrics.getGoal().read(getSourceFile(path));
+                            }
+                        } else {
+                            metrics.getGoal().setStatus(BuildMetrics.FAILED);
+                        }
+                    }
+                }
+                if (!printPOTCreationDate && tmpFile.exists()) {
+                    GettextUtils.removePotCreationDate(tmpFile, keysFile, getLog());
+                }
+                if (tmpFile.exists()) {
+                    if (GettextUtils.replaceIfChanged(tmpFile, messagesPotFile)) {
+                        metrics.getGoal().written(messagesPotFile);
+                    } else {
+                        getLog().info(keysFile + " is up to date.");
+                    }
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + messagesPotFile, e);
+            } finally {
+                tmpFile.delete();
+            }
+        } finally {
+            metrics.write(metricsDirectory, executionId, getLog());
+        }
+    }
 
-        Commandline cl = new Commandline();
-        cl.setExecutable(xgettextCmd);
-        for (String arg : extraArgs) {
-            cl.createArg().setValue(arg);
+    /**
+     * @return the directories the paths of the source files are relative to,
+     * in the order they are searched
+     */
+    protected List<File> getSourceRoots() {
+        return Collections.singletonList(sourceDirectory);
+    }
+
+    /**
+     * @return the file of a source file path, found in the first source root
+     * that contains it
+     */
+    protected File getSourceFile(String path) {
+        File file = new File(path);
+        if (file.isAbsolute()) {
+            return file;
         }
-        cl.createArg().setValue("--from-code=" + encoding);
-        File messagesPotFile = new File(poDirectory, keysFile);
-        cl.createArg().setValue("--output=" + messagesPotFile.getAbsolutePath());
-        cl.createArg().setValue("--language=Java");
-        if (nowrap) {
-            cl.createArg().setValue("--no-wrap");
+        List<File> roots = getSourceRoots();
+        if (roots.size() > 1) {
+            for (File root : roots) {
+                file = new File(root, path);
+                if (file.exists()) {
+                    return file;
+                }
+            }
         }
-        cl.createArg().setLine(keywords);
-        cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
-        cl.setWorkingDirectory(sourceDirectory.getAbsolutePath());
+        return new File(roots.get(0), path);
+    }
+
+    private String describeSourceRoots() {
+        List<File> roots = getSourceRoots();
+        return roots.size() == 1 ? "'" + roots.get(0).getAbsolutePath() + "'" : roots.size() + " source directories";
+    }
 
+    /**
+     * @return the paths of all source files, relative to the source roots
+     */
+    protected List<String> getSourceFiles() throws MojoExecutionException {
+        List<String> files = scanSourceDirectory(sourceDirectory);
+        if (extraSourceFiles != null && extraSourceFiles.getDirectory() != null) {
+            files.addAll(scanFileSet(extraSourceFiles, new File(extraSourceFiles.getDirectory())));
+        }
+        return files;
+    }
+
+    /**
+     * @return the paths of the files in <code>directory</code> that match
+     * <code>includes</code> and <code>excludes</code>
+     */
+    protected List<String> scanSourceDirectory(File directory) {
         DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(sourceDirectory);
+        ds.setBasedir(directory);
         if (includes != null && includes.length > 0) {
             ds.setIncludes(includes);
         } else {
@@ -126,53 +249,459 @@ public class GettextMojo
             ds.setExcludes(excludes);
         }
         ds.scan();
-        String[] files = ds.getIncludedFiles();
-        List fileNameList = Collections.emptyList();
-        if (extraSourceFiles.getDirectory() != null) {
+        List<String> files = new ArrayList<>();
+        for (String file : ds.getIncludedFiles()) {
+            files.add(toUnixPath(file));
+        }
+        return files;
+    }
+
+    /**
+     * @return the paths of the files of an <code>extraSourceFiles</code>
+     * file set, relative to <code>directory</code>
+     */
+    protected List<String> scanFileSet(FileSet fileSet, File directory) throws MojoExecutionException {
+        List<String> files = new ArrayList<>();
+        try {
+            List<String> fileNameList = FileUtils.getFileNames(directory,
+                    StringUtils.join(fileSet.getIncludes().iterator(), ","),
+                    StringUtils.join(fileSet.getExcludes().iterator(), ","), false);
+            for (String file : fileNameList) {
+                files.add(toUnixPath(file));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("error finding extra source files", e);
+        }
+        return files;
+    }
+
+    /**
+     * Extracts the messages of all files with {@link JavaMessageExtractor}
+     * and writes them to the template. Like xgettext, the template is not
+     * written if no messages were found.
+     */
+    private void extractInProcess(List<String> files, File messagesPotFile)
+            throws MojoExecutionException {
+        JavaMessageExtractor extractor;
+        try {
+            extractor = new JavaMessageExtractor(keywords);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        int width = getWidth(extraArgs, nowrap);
+        boolean omitHeader = false;
+        String packageName = null;
+        String packageVersion = null;
+        String bugsAddress = null;
+        String copyrightHolder = null;
+        String[] args = extraArgs == null ? new String[0] : extraArgs;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--width") || arg.equals("-w")) {
+                // the page width is read by getWidth, its value is skipped
+                i++;
+            } else if (arg.equals("--no-wrap") || arg.startsWith("--width=") || arg.startsWith("-w")) {
+                // read by getWidth
+            } else if (arg.equals("--no-location")) {
+                extractor.setLocations(false);
+            } else if (arg.equals("--omit-header")) {
+                omitHeader = true;
+            } else if (arg.equals("--add-comments") || arg.equals("-c")) {
+                extractor.setCommentTag("");
+            } else if (arg.startsWith("--add-comments=")) {
+                extractor.setCommentTag(arg.substring("--add-comments=".length()));
+            } else if (arg.startsWith("-c")) {
+                extractor.setCommentTag(arg.substring(2));
+            } else if (arg.startsWith("--package-name=")) {
+                packageName = arg.substring("--package-name=".length());
+            } else if (arg.startsWith("--package-version=")) {
+                packageVersion = arg.substring("--package-version=".length());
+            } else if (arg.startsWith("--msgid-bugs-address=")) {
+                bugsAddress = arg.substring("--msgid-bugs-address=".length());
+            } else if (arg.startsWith("--copyright-holder=")) {
+                copyrightHolder = arg.substring("--copyright-holder=".length());
+            } else {
+                getLog().warn("Ignoring '" + arg + "', it is not supported when extracting in-process.");
+            }
+        }
+
+        final List<List<PoEntry>> results = new ArrayList<>(Collections.nCopies(files.size(), (List<PoEntry>) null));
+        List<TaskExecutor.Task> tasks = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final int index = i;
+            final String path = files.get(i);
+            tasks.add(metrics.task(path, (log, fileMetrics) -> {
+                File file = getSourceFile(path);
+                fileMetrics.read(file);
+                try {
+                    results.set(index, extractor.extract(path, FileUtils.fileRead(file, encoding), log));
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Unable to read " + file, e);
+                }
+            }));
+        }
+        TaskExecutor.execute(tasks, threads, getLog());
+
+        MessageCatalog catalog = new MessageCatalog();
+        if (!omitHeader) {
+            catalog.setHeader(MessageCatalog.createTemplateHeader(packageName, packageVersion, bugsAddress,
+                    copyrightHolder));
+        }
+        for (List<PoEntry> entries : results) {
+            for (PoEntry entry : entries) {
+                catalog.add(entry);
+            }
+        }
+        if (catalog.isEmpty()) {
+            getLog().info("No messages found, " + keysFile + " was not written.");
+            return;
+        }
+        catalog.updateTemplateHeader();
+        try {
+            catalog.write(messagesPotFile, sort, width);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + messagesPotFile, e);
+        }
+    }
+
+    /**
+     * Runs xgettext on the given files, in several processes if
+     * <code>shards</code> is greater than one.
+     *
+     * @param forcePo write the output file even if no messages were found
+     * @return <code>false</code> if xgettext could not be executed or failed
+     */
+    private boolean extract(List<String> files, File outputFile, boolean forcePo)
+            throws MojoExecutionException {
+        final List<List<String>> parts = split(files, shards);
+        if (parts.size() <= 1) {
+            return runXgettext(files, outputFile, forcePo, getLog());
+        }
+        getLog().info("Running " + parts.size() + " xgettext processes.");
+        final File[] partFiles = new File[parts.size()];
+        final boolean[] results = new boolean[parts.size()];
+        try {
+            List<TaskExecutor.Task> tasks = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                final int index = i;
+                partFiles[i] = File.createTempFile("xgettext", ".pot");
+                tasks.add(log -> results[index] = runXgettext(parts.get(index), partFiles[index], true, log));
+            }
+            TaskExecutor.execute(tasks, threads, getLog());
+
+            for (boolean result : results) {
+                if (!result) {
+                    return false;
+                }
+            }
+            MessageCatalog catalog = mergeShards(partFiles);
+            if (catalog.isEmpty() && !forcePo) {
+                getLog().info("No messages found, " + keysFile + " was not written.");
+                return true;
+            }
+            catalog.write(outputFile, sort, getWidth(extraArgs, nowrap));
+            return true;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to merge the messages extracted by " + xgettextCmd, e);
+        } finally {
+            for (File partFile : partFiles) {
+                if (partFile != null) {
+                    partFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the templates written by the xgettext shards into the template
+     * a single process would have written.
+     */
+    static MessageCatalog mergeShards(File[] partFiles) throws IOException {
+        // the shards are merged in file list order, which keeps the
+        // references, comments and flags in the order xgettext sees them
+        MessageCatalog catalog = new MessageCatalog();
+        for (File partFile : partFiles) {
+            catalog.addAll(partFile);
+        }
+        catalog.updateTemplateHeader();
+        return catalog;
+    }
+
+    /**
+     * Returns the page width xgettext writes the template with, taking
+     * <code>--width</code>, <code>-w</code> and <code>--no-wrap</code> in
+     * <code>extraArgs</code> into account.
+     *
+     * @return the width, or 0 if long lines are not wrapped
+     */
+    static int getWidth(String[] extraArgs, boolean nowrap) throws MojoExecutionException {
+        int width = PoWriter.DEFAULT_WIDTH;
+        boolean wrap = !nowrap;
+        String[] args = extraArgs == null ? new String[0] : extraArgs;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value;
+            if (arg.equals("--no-wrap")) {
+                wrap = false;
+                continue;
+            } else if (arg.startsWith("--width=")) {
+                value = arg.substring("--width=".length());
+            } else if ((arg.equals("--width") || arg.equals("-w")) && i + 1 < args.length) {
+                value = args[++i];
+            } else if (arg.startsWith("-w") && arg.length() > 2) {
+                value = arg.substring(2);
+            } else {
+                continue;
+            }
             try {
-                fileNameList = FileUtils.getFileNames(new File(extraSourceFiles.getDirectory()),
-                        StringUtils.join(extraSourceFiles.getIncludes().iterator(), ","),
-                        StringUtils.join(extraSourceFiles.getExcludes().iterator(), ","), false);
-            } catch (IOException e) {
-                throw new MojoExecutionException("error finding extra source files", e);
+                // like gettext, narrower pages are widened to 20 columns
+                width = Math.max(20, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                throw new MojoExecutionException("Invalid page width in extraArgs: " + value, e);
+            }
+        }
+        return wrap ? width : 0;
+    }
+
+    /**
+     * Splits the files into at most <code>count</code> contiguous ranges of
+     * about the same total size, none of them empty.
+     */
+    private List<List<String>> split(List<String> files, int count) {
+        count = Math.min(count, files.size());
+        List<List<String>> parts = new ArrayList<>(Math.max(count, 1));
+        if (count <= 1) {
+            parts.add(files);
+            return parts;
+        }
+        long[] sizes = new long[files.size()];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Math.max(1, getSourceFile(files.get(i)).length());
+            total += sizes[i];
+        }
+        int start = 0;
+        long done = 0;
+        for (int i = 0; i < sizes.length && parts.size() < count - 1; i++) {
+            done += sizes[i];
+            int remaining = sizes.length - i - 1;
+            int needed = count - parts.size() - 1;
+            if (remaining == needed || remaining > needed && done * count >= total * (parts.size() + 1)) {
+                parts.add(files.subList(start, i + 1));
+                start = i + 1;
+            }
+        }
+        parts.add(files.subList(start, files.size()));
+        return parts;
+    }
+
+    /**
+     * Runs a single xgettext process on the given files.
+     *
+     * @param forcePo write the output file even if no messages were found
+     * @return <code>false</code> if xgettext could not be executed or failed
+     */
+    private boolean runXgettext(List<String> files, File outputFile, boolean forcePo, Log log) {
+        Commandline cl = new Commandline();
+        cl.setExecutable(xgettextCmd);
+        for (String arg : extraArgs) {
+            cl.createArg().setValue(arg);
+        }
+        cl.createArg().setValue("--from-code=" + encoding);
+        cl.createArg().setValue("--output=" + outputFile.getAbsolutePath());
+        cl.createArg().setValue("--language=Java");
+        if (nowrap) {
+            cl.createArg().setValue("--no-wrap");
+        }
+        if (forcePo) {
+            cl.createArg().setValue("--force-po");
+        }
+        cl.createArg().setLine(keywords);
+        cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
+        List<File> roots = getSourceRoots();
+        cl.setWorkingDirectory(roots.get(0).getAbsolutePath());
+        if (roots.size() > 1) {
+            // xgettext looks up relative paths in these directories instead
+            // of the working directory and keeps them as they are in the
+            // references
+            for (File root : roots) {
+                cl.createArg().setValue("--directory=" + root.getAbsolutePath());
             }
         }
 
-        File file = createListFile(files, fileNameList);
+        File file = createListFile(files, log);
         if (file != null) {
             cl.createArg().setValue("--files-from=" + file.getAbsolutePath());
         } else {
-            for (int i = 0; i < files.length; i++) {
-                cl.createArg().setValue(getAbsolutePath(files[i]));
+            for (String path : files) {
+                cl.createArg().setValue(getSourceFile(path).getAbsolutePath());
             }
         }
 
-        getLog().debug("Executing: " + cl.toString());
-        StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-        StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
+        log.debug("Executing: " + cl.toString());
+        StreamConsumer out = new LoggerStreamConsumer(log, LoggerStreamConsumer.INFO);
+        StreamConsumer err = new LoggerStreamConsumer(log, LoggerStreamConsumer.WARN);
         try {
-            CommandLineUtils.executeCommandLine(cl, out, err);
+            return metrics.getGoal().run(cl, out, err) == 0;
         } catch (CommandLineException e) {
-            getLog().error("Could not execute " + xgettextCmd + ".", e);
+            log.error("Could not execute " + xgettextCmd + ".", e);
+            return false;
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
         }
-        if (!printPOTCreationDate) {
-            GettextUtils.removePotCreationDate(messagesPotFile, getLog());
+    }
+
+    /**
+     * Runs xgettext on new and changed files only and merges their messages
+     * with the cached messages of the unchanged files.
+     *
+     * @return <code>false</code> if the messages could not be attributed to
+     * source files and a full extraction is needed
+     */
+    private boolean extractIncrementally(List<String> files, File messagesPotFile)
+            throws MojoExecutionException {
+        File cacheDirectory = getCacheDirectory();
+        String options = GettextUtils.sha256(keywords, encoding, extraArgs == null ? "" : StringUtils.join(extraArgs, "\0"));
+        ExtractionCache cache = new ExtractionCache(cacheDirectory, options, getLog());
+        try {
+            Map<String, String> keys = new LinkedHashMap<>();
+            List<String> changed = new ArrayList<>();
+            for (String path : files) {
+                File file = getSourceFile(path);
+                // files that cannot be read are passed on to xgettext, which reports them
+                String key = file.isFile() ? getFingerprint(path, file) : null;
+                keys.put(path, key);
+                if (key == null || !cache.contains(key)) {
+                    changed.add(path);
+                }
+            }
+
+            PoEntry header = cache.loadHeader();
+            if (header == null) {
+                changed = new ArrayList<>(keys.keySet());
+            }
+            if (!changed.isEmpty()) {
+                getLog().info("Extracting messages from " + changed.size() + " of " + files.size() + " files.");
+                cacheDirectory.mkdirs();
+                File tempFile = File.createTempFile("xgettext", ".pot", cacheDirectory);
+                try {
+                    if (!extract(changed, tempFile, true)) {
+                        throw new MojoExecutionException(xgettextCmd + " failed, see the messages above.");
+                    }
+                    header = splitByFile(tempFile, changed, keys, cache);
+                } finally {
+                    tempFile.delete();
+                }
+                if (header == null) {
+                    getLog().warn("Could not assign the extracted messages to source files, extracting all files.");
+                    cache.invalidate();
+                    return false;
+                }
+                cache.storeHeader(header);
+            } else {
+                getLog().info("No source files have changed, using cached messages.");
+            }
+
+            MessageCatalog catalog = new MessageCatalog();
+            catalog.setHeader(header);
+            for (String key : keys.values()) {
+                if (key != null) {
+                    cache.readInto(key, catalog);
+                }
+            }
+            catalog.updateTemplateHeader();
+            catalog.write(messagesPotFile, sort, getWidth(extraArgs, nowrap));
+            cache.retainAndSave(new HashSet<>(keys.values()));
+            Set<String> extracted = new HashSet<>(changed);
+            for (Map.Entry<String, String> entry : keys.entrySet()) {
+                BuildMetrics.Record fileMetrics = metrics.file(entry.getKey());
+                if (extracted.contains(entry.getKey())) {
+                    fileMetrics.read(getSourceFile(entry.getKey()));
+                } else {
+                    fileMetrics.setStatus(BuildMetrics.SKIPPED);
+                }
+                fileMetrics.finish();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to update the message cache in " + cacheDirectory, e);
         }
     }
 
-    private File createListFile(String[] files, List fileList) {
+    /**
+     * @return the key of the cached messages of a source file
+     */
+    protected String getFingerprint(String path, File file) throws IOException {
+        return GettextUtils.sha256(path, file);
+    }
+
+    private File getCacheDirectory() {
+        return new File(workDirectory, "extract/" + keysFile);
+    }
+
+    /**
+     * Distributes the messages of an xgettext output file to the cache
+     * entries of the source files they were found in.
+     *
+     * @return the template header, or <code>null</code> if a message has no
+     * source reference to a known file, e.g. because of <code>--no-location</code>
+     */
+    private PoEntry splitByFile(File potFile, List<String> changed, Map<String, String> keys, ExtractionCache cache)
+            throws IOException {
+        Map<String, List<PoEntry>> entriesByFile = new LinkedHashMap<>();
+        for (String path : changed) {
+            entriesByFile.put(path, new ArrayList<>());
+        }
+        PoEntry header = null;
+        try (PoReader reader = new PoReader(potFile)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (entry.isHeader()) {
+                    header = entry;
+                    continue;
+                }
+                if (entry.getReferences().isEmpty()) {
+                    return null;
+                }
+                Map<String, List<String>> referencesByFile = new LinkedHashMap<>();
+                for (String reference : entry.getReferences()) {
+                    String path = MessageCatalog.getReferenceFile(reference);
+                    if (!entriesByFile.containsKey(path)) {
+                        return null;
+                    }
+                    referencesByFile.computeIfAbsent(path, p -> new ArrayList<>()).add(reference);
+                }
+                for (Map.Entry<String, List<String>> references : referencesByFile.entrySet()) {
+                    PoEntry copy = entry.copy();
+                    copy.getReferences().clear();
+                    copy.getReferences().addAll(references.getValue());
+                    entriesByFile.get(references.getKey()).add(copy);
+                }
+            }
+        }
+        if (header == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<PoEntry>> entries : entriesByFile.entrySet()) {
+            String key = keys.get(entries.getKey());
+            if (key != null) {
+                cache.store(key, entries.getValue());
+            }
+        }
+        return header;
+    }
+
+    private File createListFile(List<String> files, Log log) {
         try {
             File listFile = File.createTempFile("maven", null);
             listFile.deleteOnExit();
 
             BufferedWriter writer = new BufferedWriter(new FileWriter(listFile));
             try {
-                for (int i = 0; i < files.length; i++) {
-                    writer.write(toUnixPath(files[i]));
-                    writer.newLine();
-                }
-                for (Iterator i = fileList.iterator(); i.hasNext(); ) {
-                    writer.write(toUnixPath((String) i.next()));
+                for (String file : files) {
+                    writer.write(file);
                     writer.newLine();
                 }
             } finally {
@@ -181,15 +710,11 @@ public class GettextMojo
 
             return listFile;
         } catch (IOException e) {
-            getLog().error("Could not create list file.", e);
+            log.error("Could not create list file.", e);
             return null;
         }
     }
 
-    private String getAbsolutePath(String path) {
-        return sourceDirectory.getAbsolutePath() + File.separator + path;
-    }
-
     private String toUnixPath(String path) {
         if (File.separatorChar != '/') {
             return path.replace(File.separatorChar, '/');
@@ -17,8 +17,6 @@ package org.xnap.commons.maven.gettext;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
-import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -26,11 +24,23 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -91,80 +101,452 @@ public class GettextUtils {
         return sb.toString();
     }
 
+    private static final byte[] POT_CREATION_DATE = "POT-Creation-Date:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Removes the value of the <code>POT-Creation-Date</code> field from
+     * the header entry, leaving an empty string line in its place.
+     * <p>
+     * Bytes are compared instead of characters since the encoding is only
+     * declared in the header itself. Only the header entry, which ends at
+     * the first empty line, is searched. The file is left untouched if it
+     * has no such field, otherwise only the bytes after the field are
+     * moved.
+     */
     static void removePotCreationDate(File file, Log log) throws MojoExecutionException {
-        // cannot use Strings here since file encoding is written in the file contents via
-        // Content-Type: text/plain; charset=... header
-        // That is why byte[] is used to process the file
-        log.info("Removing POT-Creation-Date from " + file.getName());
-        InputStream is = null;
-        byte[] contents;
-        try {
-            is = new FileInputStream(file);
-            contents = IOUtil.toByteArray(is);
+        removePotCreationDate(file, file.getName(), log);
+    }
+
+    /**
+     * @param name the name of the file in log messages, for temporary files
+     *             that replace it
+     */
+    static void removePotCreationDate(File file, String name, Log log) throws MojoExecutionException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = readHeader(channel);
+            int start = indexOf(header, POT_CREATION_DATE);
+            if (start == -1) {
+                log.debug("No POT-Creation-Date in " + name);
+                return;
+            }
+            int end = start + POT_CREATION_DATE.length;
+            while (end < header.limit() && header.get(end) != '"') {
+                end++;
+            }
+            log.info("Removing POT-Creation-Date from " + name);
+            shiftTail(channel, end, end - start);
         } catch (IOException e) {
-            throw new MojoExecutionException("Unable to read " + file, e);
-        } finally {
-            IOUtil.close(is);
+            throw new MojoExecutionException("Unable to remove POT-Creation-Date from " + file, e);
         }
+    }
 
-        byte[] potCreationgDate;
-        potCreationgDate = "POT-Creation-Date:".getBytes(StandardCharsets.UTF_8);
-
-        int headerStart = 0, headerEnd = 0;
+    /**
+     * Reads the file up to and including the first empty line that
+     * follows a non-empty one, or up to the end of the file.
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        int scanned = 0;
+        boolean content = false;
+        int lineLength = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            if (channel.read(buffer, buffer.position()) == -1) {
+                break;
+            }
+            // FileChannel.read(ByteBuffer, long) does not advance the channel
+            for (; scanned < buffer.position(); scanned++) {
+                byte b = buffer.get(scanned);
+                if (b == '\n') {
+                    if (lineLength == 0 && content) {
+                        buffer.limit(scanned + 1);
+                        buffer.position(0);
+                        return buffer;
+                    }
+                    content |= lineLength > 0;
+                    lineLength = 0;
+                } else if (b != '\r') {
+                    lineLength++;
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
 
-        searchHeader:
-        for (int i = 0; i < contents.length; i++) {
-            for (int j = 0; j < potCreationgDate.length; j++) {
-                if (contents[i + j] != potCreationgDate[j]) {
-                    continue searchHeader;
+    private static int indexOf(ByteBuffer buffer, byte[] pattern) {
+        int last = buffer.limit() - pattern.length;
+        search:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) {
+                    continue search;
                 }
             }
+            return i;
+        }
+        return -1;
+    }
 
-            // header detected
-            headerStart = i;
-            for (headerEnd = headerStart + 1; headerEnd < contents.length; headerEnd++) {
-                if (contents[headerEnd] == '"') {
-                    break;
+    /**
+     * Moves the bytes from <code>from</code> up to the end of the file
+     * <code>shift</code> bytes towards the start and truncates the file.
+     */
+    private static void shiftTail(FileChannel channel, long from, long shift) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (long position = from; position < size; ) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n == -1) {
+                break;
+            }
+            buffer.flip();
+            long target = position - shift;
+            while (buffer.hasRemaining()) {
+                target += channel.write(buffer, target);
+            }
+            position += n;
+        }
+        channel.truncate(size - shift);
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the given strings, each
+     * terminated by a NUL character.
+     */
+    static String sha256(String... values) {
+        MessageDigest digest = createSha256();
+        for (String value : values) {
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of a file's name and contents.
+     */
+    static String sha256(String name, File file) throws IOException {
+        MessageDigest digest = createSha256();
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of a file's name and contents,
+     * for contents that are already in memory.
+     */
+    static String sha256(String name, byte[] content) {
+        MessageDigest digest = createSha256();
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest createSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a file in the directory of <code>file</code> to write its new
+     * content to, see {@link #replaceIfChanged(File, File)}. The directory is
+     * created if needed, the returned file does not exist.
+     */
+    static File createTempFile(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File tmp = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+        // tools like xgettext do not write their output if there is nothing to write
+        tmp.delete();
+        return tmp;
+    }
+
+    /**
+     * Moves <code>tmp</code> to <code>file</code> if their contents differ
+     * and deletes it otherwise, so that an unchanged file keeps its
+     * timestamp and tools that watch it do not see a change.
+     *
+     * @return <code>true</code> if <code>file</code> was replaced
+     * @see #replace(File, File)
+     */
+    static boolean replaceIfChanged(File tmp, File file) throws IOException {
+        if (contentEquals(tmp, file)) {
+            tmp.delete();
+            return false;
+        }
+        replace(tmp, file);
+        return true;
+    }
+
+    /**
+     * Moves <code>tmp</code> to <code>file</code>, atomically where the file
+     * system supports it, so readers never see a partly written file.
+     * <code>tmp</code> should be in the same directory, see
+     * {@link #createTempFile(File)}.
+     */
+    static void replace(File tmp, File file) throws IOException {
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Writes <code>content</code> to <code>file</code> unless the file has
+     * that content already, see {@link #replaceIfChanged(File, File)}.
+     *
+     * @return <code>true</code> if <code>file</code> was written
+     */
+    static boolean writeIfChanged(File file, byte[] content) throws IOException {
+        if (file.isFile() && file.length() == content.length
+                && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+            return false;
+        }
+        write(file, content);
+        return true;
+    }
+
+    /**
+     * Writes <code>content</code> to a temporary file and moves it to
+     * <code>file</code>, see {@link #replace(File, File)}.
+     */
+    static void write(File file, byte[] content) throws IOException {
+        File tmp = createTempFile(file);
+        try {
+            Files.write(tmp.toPath(), content);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        replace(tmp, file);
+    }
+
+    /**
+     * Copies <code>source</code> to <code>file</code> unless the file has
+     * the same content already, see {@link #replaceIfChanged(File, File)}.
+     * Unlike <code>replaceIfChanged</code>, <code>source</code> may be in
+     * another directory or file system and is kept.
+     *
+     * @return <code>true</code> if <code>file</code> was written
+     */
+    static boolean copyIfChanged(File source, File file) throws IOException {
+        if (contentEquals(source, file)) {
+            return false;
+        }
+        File tmp = createTempFile(file);
+        try {
+            Files.copy(source.toPath(), tmp.toPath());
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        replace(tmp, file);
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if both files exist and have the same content
+     */
+    static boolean contentEquals(File a, File b) throws IOException {
+        if (!a.isFile() || !b.isFile() || a.length() != b.length()) {
+            return false;
+        }
+        try (InputStream in1 = new FileInputStream(a); InputStream in2 = new FileInputStream(b)) {
+            byte[] buffer1 = new byte[65536];
+            byte[] buffer2 = new byte[65536];
+            while (true) {
+                int read = in1.readNBytes(buffer1, 0, buffer1.length);
+                if (read == 0) {
+                    return in2.read() == -1;
+                }
+                if (in2.readNBytes(buffer2, 0, read) != read
+                        || !Arrays.equals(buffer1, 0, read, buffer2, 0, read)) {
+                    return false;
                 }
             }
         }
-        OutputStream os = null;
+    }
+
+    /**
+     * Replaces the unicode escapes of non-ASCII characters in a Java source
+     * file with the characters themselves, in place.
+     *
+     * @see #unescapeUnicode(File, File, String, Log)
+     */
+    public static void unescapeUnicode(File file, String encoding, Log log) throws MojoExecutionException {
+        File tmp;
+        try {
+            tmp = createTempFile(file);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + file, e);
+        }
         try {
-            os = new FileOutputStream(file);
-            os.write(contents, 0, headerStart);
-            os.write(contents, headerEnd, contents.length - headerEnd);
+            unescapeUnicode(file, tmp, encoding, log);
+            replaceIfChanged(tmp, file);
         } catch (IOException e) {
             throw new MojoExecutionException("Unable to write " + file, e);
         } finally {
-            IOUtil.close(os);
+            tmp.delete();
         }
     }
 
-    public static void unescapeUnicode(File file, String encoding, Log log) throws MojoExecutionException {
-        log.info("Unescaping unicode in " + file.getName());
-        String contents;
+    /**
+     * Copies a Java source file and replaces the unicode escapes of non-ASCII
+     * characters with the characters themselves. The file is streamed, so
+     * it is never held in memory as a whole.
+     * <p>
+     * Escapes of ASCII characters are kept, since unescaping a quote or a
+     * line break would change the meaning of the source, and so are escapes
+     * of characters that <code>encoding</code> cannot represent and unpaired
+     * surrogates. A backslash that is itself escaped, as in <code>\\u</code>,
+     * does not start an escape.
+     */
+    public static void unescapeUnicode(File input, File output, String encoding, Log log) throws MojoExecutionException {
+        log.info("Unescaping unicode in " + output.getName());
+        Charset charset;
         try {
-            contents = FileUtils.fileRead(file, encoding);
+            charset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Unsupported encoding: " + encoding, e);
+        }
+        try (Reader in = new InputStreamReader(new FileInputStream(input), charset);
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), charset), 65536)) {
+            unescapeUnicode(in, out, charset.newEncoder());
         } catch (IOException e) {
-            throw new MojoExecutionException("Unable to load " + file.getName(), e);
-        }
-        try (FileOutputStream os = new FileOutputStream(file);
-             Writer w = new BufferedWriter(new OutputStreamWriter(os, encoding))
-        ) {
-            int length = contents.length();
-            for (int i = 0; i < length; i++) {
-                char c = contents.charAt(i);
-                if (c == '\\'
-                        && i + 1 < length && contents.charAt(i + 1) == 'u') {
-                    String code = contents.substring(i + 2, i + 6);
-                    w.write(Integer.parseInt(code, 16));
-                    i += 5;
-                } else {
-                    w.append(c);
+            throw new MojoExecutionException("Unable to unescape " + input + " to " + output, e);
+        }
+    }
+
+    static void unescapeUnicode(Reader in, Writer out, CharsetEncoder encoder) throws IOException {
+        char[] buffer = new char[65536];
+        int end = 0;
+        boolean eof = false;
+        // whether the last character written was a backslash escaping the next one
+        boolean escaping = false;
+        while (!eof) {
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                eof = true;
+            } else {
+                end += read;
+            }
+            int i = 0;
+            int run = 0;
+            while (i < end) {
+                if (buffer[i] != '\\') {
+                    escaping = false;
+                    i++;
+                    continue;
                 }
+                if (escaping) {
+                    escaping = false;
+                    i++;
+                    continue;
+                }
+                // keep an escape that continues in the next chunk, unless it could never fit
+                boolean more = !eof && (i > 0 || end < buffer.length);
+                int length = escapeLength(buffer, i, end);
+                if (length == -1 && more) {
+                    break;
+                }
+                if (length <= 0) {
+                    escaping = true;
+                    i++;
+                    continue;
+                }
+                char c = decodeEscape(buffer, i, length);
+                if (Character.isHighSurrogate(c)) {
+                    int next = escapeLength(buffer, i + length, end);
+                    if (next == -1 && more) {
+                        break;
+                    }
+                    char low = next > 0 ? decodeEscape(buffer, i + length, next) : 0;
+                    if (Character.isLowSurrogate(low) && encoder.canEncode(new String(new char[]{c, low}))) {
+                        out.write(buffer, run, i - run);
+                        out.write(c);
+                        out.write(low);
+                        i += length + next;
+                        run = i;
+                        continue;
+                    }
+                } else if (c >= 0x80 && !Character.isSurrogate(c) && encoder.canEncode(c)) {
+                    out.write(buffer, run, i - run);
+                    out.write(c);
+                    i += length;
+                    run = i;
+                    continue;
+                }
+                i += length;
             }
-        } catch (IOException e) {
-            throw new MojoExecutionException("Unable to write " + file, e);
+            out.write(buffer, run, i - run);
+            System.arraycopy(buffer, i, buffer, 0, end - i);
+            end -= i;
+        }
+    }
+
+    /**
+     * @return the length of the unicode escape at <code>start</code>, 0 if
+     * there is none, or -1 if the end of the buffer is reached before that
+     * is known
+     */
+    private static int escapeLength(char[] buffer, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        if (buffer[start] != '\\') {
+            return 0;
+        }
+        int i = start + 1;
+        while (i < end && buffer[i] == 'u') {
+            i++;
         }
+        if (i == start + 1) {
+            return i < end ? 0 : -1;
+        }
+        for (int j = 0; j < 4; j++, i++) {
+            if (i >= end) {
+                return -1;
+            }
+            if (Character.digit(buffer[i], 16) == -1) {
+                return 0;
+            }
+        }
+        return i - start;
+    }
+
+    private static char decodeEscape(char[] buffer, int start, int length) {
+        return (char) Integer.parseInt(new String(buffer, start + length - 4, 4), 16);
     }
 }
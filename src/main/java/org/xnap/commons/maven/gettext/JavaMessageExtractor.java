@@ -0,0 +1,796 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Extracts messages from Java source code the way <code>xgettext
+ * --language=Java</code> does.
+ * <p>
+ * The source is tokenized and the arguments of calls to keyword methods are
+ * collected. An argument is a message if it contains a string literal, or
+ * several literals concatenated with <code>+</code>, outside of nested
+ * parentheses. The keywords are specified like xgettext's <code>-k</code>
+ * option, e.g. <code>-ktrc:1c,2 -ktrn:1,2 -ktr</code>.
+ */
+class JavaMessageExtractor {
+
+    /**
+     * The keywords xgettext uses for Java unless <code>-k</code> is given
+     * without a keyword.
+     */
+    private static final String[] DEFAULT_KEYWORDS = {
+            "GettextResource.gettext:2",
+            "GettextResource.ngettext:2,3",
+            "GettextResource.pgettext:2c,3",
+            "GettextResource.npgettext:2c,3,4",
+            "gettext",
+            "ngettext:1,2",
+            "pgettext:1c,2",
+            "npgettext:1c,2,3",
+            "getString",
+    };
+
+    private static final String JAVA_FORMAT = "java-format";
+
+    private final Map<String, List<Keyword>> keywords = new HashMap<>();
+    private boolean locations = true;
+    private String commentTag;
+
+    /**
+     * @param keywordOptions the <code>-k</code> options, separated by white space
+     */
+    JavaMessageExtractor(String keywordOptions) {
+        boolean defaults = true;
+        StringTokenizer t = new StringTokenizer(keywordOptions);
+        while (t.hasMoreTokens()) {
+            String option = t.nextToken();
+            String spec;
+            if (option.startsWith("--keyword=")) {
+                spec = option.substring("--keyword=".length());
+            } else if (option.equals("--keyword")) {
+                spec = "";
+            } else if (option.startsWith("-k")) {
+                spec = option.substring(2);
+            } else {
+                throw new IllegalArgumentException("Not a keyword option: " + option);
+            }
+            if (spec.isEmpty()) {
+                defaults = false;
+            } else {
+                addKeyword(spec);
+            }
+        }
+        if (defaults) {
+            for (String spec : DEFAULT_KEYWORDS) {
+                addKeyword(spec);
+            }
+        }
+    }
+
+    private void addKeyword(String spec) {
+        Keyword keyword = Keyword.parse(spec);
+        keywords.computeIfAbsent(keyword.name, k -> new ArrayList<>()).add(keyword);
+    }
+
+    /**
+     * Enables or disables source references, like xgettext's <code>--no-location</code>.
+     */
+    void setLocations(boolean locations) {
+        this.locations = locations;
+    }
+
+    /**
+     * Adds comments preceding a keyword to the extracted message, like
+     * xgettext's <code>--add-comments</code>.
+     *
+     * @param commentTag only comments starting with this tag are added, all
+     *                   comments if empty, none if <code>null</code>
+     */
+    void setCommentTag(String commentTag) {
+        this.commentTag = commentTag;
+    }
+
+    /**
+     * Extracts the messages of a source file. Messages found more than once
+     * are returned once per occurrence.
+     *
+     * @param path the file name used in source references
+     */
+    List<PoEntry> extract(String path, String source, Log log) {
+        List<Token> tokens = new Lexer(path, source, log).tokenize();
+        Parser parser = new Parser(path, tokens, log);
+        while (parser.position < tokens.size()) {
+            parser.parse(null);
+            // skip unbalanced closing parentheses and braces
+            parser.position++;
+        }
+        return parser.messages;
+    }
+
+    /**
+     * Checks if a message is a {@link java.text.MessageFormat} pattern with
+     * at least one argument, which xgettext marks as <code>java-format</code>.
+     */
+    static boolean isJavaFormat(String s) {
+        int directives = 0;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\'') {
+                int end = s.indexOf('\'', i + 1);
+                if (end == -1) {
+                    return false;
+                }
+                i = end + 1;
+            } else if (c == '{') {
+                int start = ++i;
+                while (i < s.length() && Character.isDigit(s.charAt(i))) {
+                    i++;
+                }
+                if (i == start) {
+                    return false;
+                }
+                int depth = 1;
+                while (i < s.length() && depth > 0) {
+                    char d = s.charAt(i++);
+                    if (d == '{') {
+                        depth++;
+                    } else if (d == '}') {
+                        depth--;
+                    } else if (d == '\'' && depth == 1) {
+                        int end = s.indexOf('\'', i);
+                        if (end == -1) {
+                            return false;
+                        }
+                        i = end + 1;
+                    }
+                }
+                if (depth > 0) {
+                    return false;
+                }
+                String element = s.substring(start, i - 1);
+                int comma = element.indexOf(',');
+                if (comma != -1) {
+                    int next = element.indexOf(',', comma + 1);
+                    String type = (next == -1 ? element.substring(comma + 1) : element.substring(comma + 1, next)).trim();
+                    if (!type.equals("number") && !type.equals("date") && !type.equals("time")
+                            && !type.equals("choice")) {
+                        return false;
+                    }
+                }
+                directives++;
+            } else if (c == '}') {
+                return false;
+            } else {
+                i++;
+            }
+        }
+        return directives > 0;
+    }
+
+    /**
+     * A keyword specification such as <code>trc:1c,2</code>.
+     */
+    static class Keyword {
+
+        final String name;
+        int singular;
+        int plural;
+        int context;
+        int total;
+        String comment;
+
+        Keyword(String name) {
+            this.name = name;
+        }
+
+        static Keyword parse(String spec) {
+            int colon = spec.indexOf(':');
+            if (colon == -1) {
+                Keyword keyword = new Keyword(spec);
+                keyword.singular = 1;
+                return keyword;
+            }
+            Keyword keyword = new Keyword(spec.substring(0, colon));
+            for (String item : spec.substring(colon + 1).split(",")) {
+                item = item.trim();
+                if (item.startsWith("\"") && item.endsWith("\"") && item.length() >= 2) {
+                    keyword.comment = item.substring(1, item.length() - 1);
+                } else if (item.endsWith("c")) {
+                    keyword.context = parseNumber(spec, item.substring(0, item.length() - 1));
+                } else if (item.endsWith("t")) {
+                    keyword.total = parseNumber(spec, item.substring(0, item.length() - 1));
+                } else if (keyword.singular == 0) {
+                    keyword.singular = parseNumber(spec, item);
+                } else if (keyword.plural == 0) {
+                    keyword.plural = parseNumber(spec, item);
+                } else {
+                    throw new IllegalArgumentException("Invalid keyword specification: " + spec);
+                }
+            }
+            if (keyword.singular == 0) {
+                keyword.singular = 1;
+            }
+            return keyword;
+        }
+
+        private static int parseNumber(String spec, String value) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n > 0) {
+                    return n;
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            throw new IllegalArgumentException("Invalid keyword specification: " + spec);
+        }
+
+        boolean accepts(int argumentCount) {
+            return total == 0 ? Math.max(singular, Math.max(plural, context)) <= argumentCount : total == argumentCount;
+        }
+    }
+
+    private enum TokenType {
+        SYMBOL, STRING, LPAREN, RPAREN, LBRACE, RBRACE, COMMA, PLUS, OTHER, EOF
+    }
+
+    private static class Token {
+
+        final TokenType type;
+        final String value;
+        final int line;
+        List<String> comments;
+
+        Token(TokenType type, String value, int line) {
+            this.type = type;
+            this.value = value;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Splits Java source code into tokens. Unicode escapes are resolved
+     * first, like the Java compiler does.
+     */
+    private class Lexer {
+
+        private final String path;
+        private final Log log;
+        private final char[] chars;
+        private final int[] lines;
+        private final int length;
+        private int pos;
+        private final List<Token> tokens = new ArrayList<>();
+        private final List<String> comments = new ArrayList<>();
+        private int lastCommentLine = -1;
+        private List<String> activeComments;
+        private int activeLine;
+
+        Lexer(String path, String source, Log log) {
+            this.path = path;
+            this.log = log;
+            chars = new char[source.length()];
+            lines = new int[source.length() + 1];
+            int n = 0;
+            int line = 1;
+            int backslashes = 0;
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (c == '\\' && backslashes % 2 == 0 && i + 1 < source.length() && source.charAt(i + 1) == 'u') {
+                    int j = i + 1;
+                    while (j < source.length() && source.charAt(j) == 'u') {
+                        j++;
+                    }
+                    if (j + 4 <= source.length() && isHex(source, j, j + 4)) {
+                        chars[n] = (char) Integer.parseInt(source.substring(j, j + 4), 16);
+                        lines[n++] = line;
+                        i = j + 3;
+                        backslashes = 0;
+                        continue;
+                    }
+                }
+                backslashes = c == '\\' ? backslashes + 1 : 0;
+                chars[n] = c;
+                lines[n++] = line;
+                if (c == '\n' || (c == '\r' && (i + 1 == source.length() || source.charAt(i + 1) != '\n'))) {
+                    line++;
+                }
+            }
+            length = n;
+            lines[n] = line;
+        }
+
+        private boolean isHex(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (Character.digit(s.charAt(i), 16) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private char peek(int offset) {
+            return pos + offset < length ? chars[pos + offset] : 0;
+        }
+
+        List<Token> tokenize() {
+            while (pos < length) {
+                char c = chars[pos];
+                int line = lines[pos];
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '/' && peek(1) == '/') {
+                    int start = pos + 2;
+                    while (pos < length && chars[pos] != '\n' && chars[pos] != '\r') {
+                        pos++;
+                    }
+                    addComment(new String(chars, start, pos - start), line, line);
+                } else if (c == '/' && peek(1) == '*') {
+                    int start = pos + 2;
+                    pos = start;
+                    while (pos < length && !(chars[pos] == '*' && peek(1) == '/')) {
+                        pos++;
+                    }
+                    int end = pos;
+                    pos = Math.min(pos + 2, length);
+                    addComment(new String(chars, start, end - start), line, lines[end]);
+                } else if (c == '"' && peek(1) == '"' && peek(2) == '"') {
+                    add(TokenType.STRING, readTextBlock(), line);
+                } else if (c == '"') {
+                    add(TokenType.STRING, readString(), line);
+                } else if (c == '\'') {
+                    readCharacter();
+                    add(TokenType.OTHER, null, line);
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    add(TokenType.SYMBOL, readSymbol(), line);
+                } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(peek(1)))) {
+                    while (pos < length && (Character.isJavaIdentifierPart(chars[pos]) || chars[pos] == '.')) {
+                        pos++;
+                    }
+                    add(TokenType.OTHER, null, line);
+                } else {
+                    pos++;
+                    if (c == '(') {
+                        add(TokenType.LPAREN, null, line);
+                    } else if (c == ')') {
+                        add(TokenType.RPAREN, null, line);
+                    } else if (c == '{') {
+                        add(TokenType.LBRACE, null, line);
+                    } else if (c == '}') {
+                        add(TokenType.RBRACE, null, line);
+                    } else if (c == ',') {
+                        add(TokenType.COMMA, null, line);
+                    } else if (c == '+' && peek(0) != '+' && peek(0) != '=') {
+                        add(TokenType.PLUS, null, line);
+                    } else {
+                        if (c == '+') {
+                            pos++;
+                        }
+                        add(TokenType.OTHER, null, line);
+                    }
+                }
+            }
+            add(TokenType.EOF, null, lines[length]);
+            return tokens;
+        }
+
+        private void add(TokenType type, String value, int line) {
+            Token token = new Token(type, value, line);
+            if (!comments.isEmpty()) {
+                // comments apply to the code on the same or the following line
+                activeComments = lastCommentLine >= line - 1 ? new ArrayList<>(comments) : null;
+                activeLine = line;
+                comments.clear();
+            } else if (line != activeLine) {
+                activeComments = null;
+            }
+            token.comments = activeComments;
+            tokens.add(token);
+        }
+
+        private void addComment(String text, int startLine, int endLine) {
+            if (lastCommentLine < startLine - 1) {
+                comments.clear();
+            }
+            for (String line : text.split("\r\n|\r|\n", -1)) {
+                line = line.trim();
+                while (line.startsWith("*")) {
+                    line = line.substring(1).trim();
+                }
+                comments.add(line);
+            }
+            lastCommentLine = endLine;
+        }
+
+        private String readSymbol() {
+            StringBuilder sb = new StringBuilder();
+            readIdentifier(sb);
+            while (true) {
+                int mark = pos;
+                skipSpaces();
+                if (peek(0) != '.') {
+                    pos = mark;
+                    break;
+                }
+                pos++;
+                skipSpaces();
+                if (!Character.isJavaIdentifierStart(peek(0))) {
+                    pos = mark;
+                    break;
+                }
+                sb.append('.');
+                readIdentifier(sb);
+            }
+            return sb.toString();
+        }
+
+        private void readIdentifier(StringBuilder sb) {
+            while (pos < length && Character.isJavaIdentifierPart(chars[pos])) {
+                sb.append(chars[pos++]);
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < length && Character.isWhitespace(chars[pos])) {
+                pos++;
+            }
+        }
+
+        private void readCharacter() {
+            pos++;
+            while (pos < length && chars[pos] != '\'' && chars[pos] != '\n' && chars[pos] != '\r') {
+                if (chars[pos] == '\\') {
+                    pos++;
+                }
+                pos++;
+            }
+            pos++;
+        }
+
+        private String readString() {
+            int line = lines[pos];
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= length || chars[pos] == '\n' || chars[pos] == '\r') {
+                    log.warn(path + ":" + line + ": unterminated string literal");
+                    return sb.toString();
+                }
+                char c = chars[pos++];
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c == '\\') {
+                    readEscape(sb);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+
+        private String readTextBlock() {
+            int line = lines[pos];
+            pos += 3;
+            while (pos < length && chars[pos] != '\n' && chars[pos] != '\r') {
+                pos++;
+            }
+            if (pos < length && chars[pos] == '\r' && peek(1) == '\n') {
+                pos++;
+            }
+            pos++;
+            int start = pos;
+            while (pos < length && !(chars[pos] == '"' && peek(1) == '"' && peek(2) == '"')) {
+                if (chars[pos] == '\\') {
+                    pos++;
+                }
+                pos++;
+            }
+            if (pos >= length) {
+                log.warn(path + ":" + line + ": unterminated text block");
+            }
+            String[] rawLines = new String(chars, start, Math.min(pos, length) - start).split("\r\n|\r|\n", -1);
+            pos += 3;
+
+            // strip the common indentation of non-blank lines and the closing delimiter line
+            int indent = Integer.MAX_VALUE;
+            for (int i = 0; i < rawLines.length; i++) {
+                String s = rawLines[i];
+                boolean last = i == rawLines.length - 1;
+                if (!s.trim().isEmpty() || last) {
+                    int n = 0;
+                    while (n < s.length() && Character.isWhitespace(s.charAt(n))) {
+                        n++;
+                    }
+                    indent = Math.min(indent, n);
+                }
+            }
+            StringBuilder raw = new StringBuilder();
+            for (int i = 0; i < rawLines.length; i++) {
+                String s = rawLines[i];
+                s = s.length() > indent ? s.substring(indent) : "";
+                int end = s.length();
+                while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+                    end--;
+                }
+                raw.append(s, 0, end);
+                if (i < rawLines.length - 1) {
+                    raw.append('\n');
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c == '\\' && i + 1 < raw.length()) {
+                    char e = raw.charAt(++i);
+                    if (e == '\n') {
+                        continue;
+                    }
+                    i = appendEscape(sb, raw, i);
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private void readEscape(StringBuilder sb) {
+            if (pos >= length) {
+                return;
+            }
+            pos = appendEscape(sb, new String(chars, pos, Math.min(4, length - pos)), 0) + pos + 1;
+        }
+
+        /**
+         * Appends the character of the escape sequence starting at
+         * <code>s.charAt(i)</code>, the character after the backslash.
+         *
+         * @return the index of the last character of the sequence
+         */
+        private int appendEscape(StringBuilder sb, CharSequence s, int i) {
+            char e = s.charAt(i);
+            switch (e) {
+                case 'b': sb.append('\b'); return i;
+                case 't': sb.append('\t'); return i;
+                case 'n': sb.append('\n'); return i;
+                case 'f': sb.append('\f'); return i;
+                case 'r': sb.append('\r'); return i;
+                case 's': sb.append(' '); return i;
+                default:
+                    if (e >= '0' && e <= '7') {
+                        int max = e <= '3' ? 3 : 2;
+                        int value = 0;
+                        int end = i;
+                        while (end < s.length() && end - i < max && s.charAt(end) >= '0' && s.charAt(end) <= '7') {
+                            value = value * 8 + s.charAt(end) - '0';
+                            end++;
+                        }
+                        sb.append((char) value);
+                        return end - 1;
+                    }
+                    sb.append(e);
+                    return i;
+            }
+        }
+    }
+
+    /**
+     * Collects the arguments of keyword calls, mirroring the nesting of
+     * parentheses and braces.
+     */
+    private class Parser {
+
+        private final String path;
+        private final List<Token> tokens;
+        private final Log log;
+        private final List<PoEntry> messages = new ArrayList<>();
+        int position;
+
+        Parser(String path, List<Token> tokens, Log log) {
+            this.path = path;
+            this.tokens = tokens;
+            this.log = log;
+        }
+
+        /**
+         * Parses up to the next closing parenthesis or brace and returns with
+         * <code>position</code> at the closing token.
+         *
+         * @param call the keyword call whose arguments are parsed, or <code>null</code>
+         */
+        void parse(Call call) {
+            List<Keyword> pending = null;
+            Token pendingToken = null;
+            while (true) {
+                Token token = tokens.get(position);
+                switch (token.type) {
+                    case SYMBOL:
+                        pending = keywords.get(token.value);
+                        if (pending == null) {
+                            // match the last components of a qualified name
+                            String name = token.value;
+                            int dot;
+                            while (pending == null && (dot = name.indexOf('.')) != -1) {
+                                name = name.substring(dot + 1);
+                                pending = keywords.get(name);
+                            }
+                        }
+                        pendingToken = token;
+                        position++;
+                        if (call != null) {
+                            call.touch();
+                        }
+                        continue;
+                    case LPAREN:
+                    case LBRACE:
+                        position++;
+                        Call nested = token.type == TokenType.LPAREN && pending != null ? new Call(pending, pendingToken) : null;
+                        parse(nested);
+                        if (nested != null) {
+                            nested.finish();
+                        }
+                        if (tokens.get(position).type != TokenType.EOF) {
+                            position++;
+                        }
+                        if (call != null) {
+                            call.touch();
+                        }
+                        break;
+                    case RPAREN:
+                    case RBRACE:
+                    case EOF:
+                        // a mismatched closing token ends this level as well
+                        return;
+                    case COMMA:
+                        position++;
+                        if (call != null) {
+                            call.nextArgument();
+                        }
+                        break;
+                    case STRING:
+                        StringBuilder value = new StringBuilder(token.value);
+                        position++;
+                        while (tokens.get(position).type == TokenType.PLUS
+                                && tokens.get(position + 1).type == TokenType.STRING) {
+                            value.append(tokens.get(position + 1).value);
+                            position += 2;
+                        }
+                        if (call != null) {
+                            call.remember(value.toString(), token.line);
+                        }
+                        break;
+                    default:
+                        position++;
+                        if (call != null) {
+                            call.touch();
+                        }
+                        break;
+                }
+                pending = null;
+                pendingToken = null;
+            }
+        }
+
+        private class Call {
+
+            private final List<Keyword> alternatives;
+            private final Token keywordToken;
+            private final Map<Integer, String> strings = new HashMap<>();
+            private final Map<Integer, Integer> stringLines = new HashMap<>();
+            private int argument = 1;
+            private boolean empty = true;
+
+            Call(List<Keyword> alternatives, Token keywordToken) {
+                this.alternatives = alternatives;
+                this.keywordToken = keywordToken;
+            }
+
+            void touch() {
+                empty = false;
+            }
+
+            void nextArgument() {
+                empty = false;
+                argument++;
+            }
+
+            void remember(String value, int line) {
+                empty = false;
+                if (!strings.containsKey(argument)) {
+                    strings.put(argument, value);
+                    stringLines.put(argument, line);
+                }
+            }
+
+            void finish() {
+                int count = empty ? 0 : argument;
+                for (Keyword keyword : alternatives) {
+                    if (!keyword.accepts(count)) {
+                        continue;
+                    }
+                    String msgid = strings.get(keyword.singular);
+                    String plural = keyword.plural > 0 ? strings.get(keyword.plural) : null;
+                    String context = keyword.context > 0 ? strings.get(keyword.context) : null;
+                    if (msgid == null || (keyword.plural > 0 && plural == null)
+                            || (keyword.context > 0 && context == null)) {
+                        continue;
+                    }
+                    int line = stringLines.get(keyword.singular);
+                    if (msgid.isEmpty()) {
+                        log.warn(path + ":" + line + ": Empty msgid. It is reserved by GNU gettext,"
+                                + " the message is ignored.");
+                        return;
+                    }
+                    add(keyword, context, msgid, plural, line);
+                    return;
+                }
+            }
+
+            private void add(Keyword keyword, String context, String msgid, String plural, int line) {
+                PoEntry entry = new PoEntry();
+                if (commentTag != null && keywordToken.comments != null) {
+                    List<String> comments = keywordToken.comments;
+                    for (int i = 0; i < comments.size(); i++) {
+                        if (comments.get(i).startsWith(commentTag)) {
+                            entry.getExtractedComments().addAll(trim(comments.subList(i, comments.size())));
+                            break;
+                        }
+                    }
+                }
+                if (keyword.comment != null) {
+                    entry.getExtractedComments().add(keyword.comment);
+                }
+                if (locations) {
+                    entry.getReferences().add(path + ":" + line);
+                }
+                if (isJavaFormat(msgid) || (plural != null && isJavaFormat(plural))) {
+                    entry.getFlags().add(JAVA_FORMAT);
+                }
+                entry.setMsgctxt(context);
+                entry.setMsgid(msgid);
+                if (plural != null) {
+                    entry.setMsgidPlural(plural);
+                    entry.getMsgstr().add("");
+                    entry.getMsgstr().add("");
+                } else {
+                    entry.setMsgstr("");
+                }
+                messages.add(entry);
+            }
+
+            private List<String> trim(List<String> lines) {
+                int start = 0;
+                int end = lines.size();
+                while (start < end && lines.get(start).isEmpty()) {
+                    start++;
+                }
+                while (end > start && lines.get(end - 1).isEmpty()) {
+                    end--;
+                }
+                return lines.subList(start, end);
+            }
+        }
+    }
+}
@@ -17,23 +17,39 @@ package org.xnap.commons.maven.gettext;
  */
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Invokes the gettext:gettext goal and invokes msgmerge to update po files.
+ * <p>
+ * With <code>inProcess</code> the po files are merged inside the plugin,
+ * with the template read once for all of them.
+ * <p>
+ * Po files that have not changed since they were last merged with the same
+ * template and options are skipped. The fingerprints of the last merge are
+ * kept in <code>workDirectory</code>. Timings are written to
+ * <code>metricsDirectory</code>.
  *
  * @author Tammo van Lessen
  */
-@Mojo(name = "merge", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+@Mojo(name = "merge", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
 public class MergeMojo
         extends AbstractGettextMojo {
 
@@ -64,9 +80,20 @@ public class MergeMojo
     @Parameter(property = "noFuzzyMatching", defaultValue = "false")
     protected boolean noFuzzyMatching;
 
+    /**
+     * Merge the po files inside the plugin instead of launching msgmerge for
+     * every file. The template is read once, and the similar messages that
+     * fuzzy matching proposes are searched once for all po files. The output
+     * is that of msgmerge with <code>sort</code>, <code>backup</code> and
+     * <code>noFuzzyMatching</code>; <code>extraArgs</code> are ignored.
+     * Files are only rewritten if their content changes.
+     */
+    @Parameter(property = "inProcess", defaultValue = "false")
+    protected boolean inProcess;
+
     public void execute()
             throws MojoExecutionException {
-        getLog().info("Invoking msgmerge for po files in '"
+        getLog().info((inProcess ? "Merging" : "Invoking msgmerge for") + " po files in '"
                 + poDirectory.getAbsolutePath() + "'.");
 
         DirectoryScanner ds = new DirectoryScanner();
@@ -82,38 +109,231 @@ public class MergeMojo
         ds.scan();
         String[] files = ds.getIncludedFiles();
         getLog().info("Processing files in " + poDirectory);
-        for (int i = 0; i < files.length; i++) {
-            String fileName = files[i];
-            getLog().info("Processing " + fileName);
+        BuildMetrics metrics = new BuildMetrics("merge");
+        File fingerprintFile = new File(workDirectory, "merge/" + keysFile + ".properties");
+        try (FileLocks.Lock lock = FileLocks.write(fingerprintFile)) {
+            final FingerprintStore fingerprints = loadFingerprints(fingerprintFile);
+            final MessageMerger merger = inProcess ? createMerger(files, fingerprints, metrics) : null;
+            List<TaskExecutor.Task> tasks = new ArrayList<>(files.length);
+            for (int i = 0; i < files.length; i++) {
+                final String fileName = files[i];
+                tasks.add(metrics.task(fileName, (log, fileMetrics) -> merge(fileName, fingerprints, merger, log, fileMetrics)));
+            }
+            try {
+                TaskExecutor.execute(tasks, threads, getLog());
+            } finally {
+                try {
+                    fingerprints.save();
+                } catch (IOException e) {
+                    getLog().warn("Could not save merge fingerprints: " + e.getMessage());
+                }
+            }
+        } finally {
+            metrics.write(metricsDirectory, executionId, getLog());
+        }
+    }
+
+    /**
+     * Loads the fingerprints of the last merge. They are discarded if the
+     * template or the merge options have changed since.
+     */
+    private FingerprintStore loadFingerprints(File fingerprintFile) throws MojoExecutionException {
+        FingerprintStore fingerprints = FingerprintStore.load(fingerprintFile);
+        File potFile = new File(poDirectory, keysFile);
+        String pot;
+        try (FileLocks.Lock lock = FileLocks.read(potFile)) {
+            pot = potFile.isFile() ? GettextUtils.sha256(keysFile, potFile) : "";
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + potFile, e);
+        }
+        String options = GettextUtils.sha256(msgmergeCmd, backup, sort, String.valueOf(noFuzzyMatching),
+                String.valueOf(printPOTCreationDate), String.valueOf(inProcess),
+                extraArgs == null ? "" : StringUtils.join(extraArgs, "\0"));
+        if (!fingerprints.matches("pot", pot) || !fingerprints.matches("options", options)) {
+            fingerprints.clear();
+            fingerprints.put("pot", pot);
+            fingerprints.put("options", options);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Reads the template and indexes the messages of the po files that
+     * need to be merged for fuzzy matching.
+     */
+    private MessageMerger createMerger(String[] files, FingerprintStore fingerprints, BuildMetrics metrics)
+            throws MojoExecutionException {
+        if (extraArgs != null && extraArgs.length > 0) {
+            getLog().warn("extraArgs are ignored when merging in process.");
+        }
+        File potFile = new File(poDirectory, keysFile);
+        final MessageMerger merger;
+        try (FileLocks.Lock lock = FileLocks.read(potFile)) {
+            metrics.getGoal().read(potFile);
+            merger = new MessageMerger(potFile, !noFuzzyMatching, getMessageKeys());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + potFile, e);
+        }
+        if (noFuzzyMatching) {
+            return merger;
+        }
+        List<TaskExecutor.Task> tasks = new ArrayList<>(files.length);
+        for (final String fileName : files) {
+            tasks.add(log -> {
+                File file = new File(poDirectory, fileName);
+                try (FileLocks.Lock lock = FileLocks.read(file)) {
+                    if (!isMerged(fileName, file, fingerprints)) {
+                        merger.index(file);
+                    }
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Unable to read " + file, e);
+                }
+            });
+        }
+        TaskExecutor.execute(tasks, threads, getLog());
+        return merger;
+    }
+
+    /**
+     * @return <code>true</code> if the po file has not changed since the last merge
+     */
+    private static boolean isMerged(String fileName, File file, FingerprintStore fingerprints) throws IOException {
+        String key = getFingerprintKey(fileName);
+        return fingerprints.matches(key, GettextUtils.sha256(key, file));
+    }
+
+    private static String getFingerprintKey(String fileName) {
+        return "po." + fileName.replace(File.separatorChar, '/');
+    }
+
+    private void merge(String fileName, FingerprintStore fingerprints, MessageMerger merger, Log log,
+                       BuildMetrics.Record fileMetrics)
+            throws MojoExecutionException {
+        File file = new File(poDirectory, fileName);
+        File potFile = new File(poDirectory, keysFile);
+        // another project with the same poDirectory may merge in parallel
+        try (FileLocks.Lock poLock = FileLocks.write(file); FileLocks.Lock potLock = FileLocks.read(potFile)) {
+            String key = getFingerprintKey(fileName);
+            fileMetrics.read(file);
+            try {
+                if (isMerged(fileName, file, fingerprints)) {
+                    log.info("Skipping " + fileName + ", it has not changed since the last merge");
+                    fileMetrics.setStatus(BuildMetrics.SKIPPED);
+                    return;
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + file, e);
+            }
+
+            log.info("Processing " + fileName);
+            if (merger != null) {
+                mergeInProcess(file, merger, log, fileMetrics);
+                try {
+                    fingerprints.put(key, GettextUtils.sha256(key, file));
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Unable to read " + file, e);
+                }
+                return;
+            }
+            // msgmerge writes next to the po file, which is only replaced if it has changed
+            File tmpFile;
+            try {
+                tmpFile = GettextUtils.createTempFile(file);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + file, e);
+            }
             Commandline cl = new Commandline();
             cl.setExecutable(msgmergeCmd);
             for (String arg : extraArgs) {
                 cl.createArg().setValue(arg);
             }
             cl.createArg().setValue("-q");
-            cl.createArg().setValue("--backup=" + backup);
-            cl.createArg().setValue("-U");
+            cl.createArg().setValue("-o");
+            cl.createArg().setFile(tmpFile);
             if (noFuzzyMatching) {
                 cl.createArg().setValue("--no-fuzzy-matching");
             }
-            File file = new File(poDirectory, fileName);
             cl.createArg().setFile(file);
-            cl.createArg().setValue(new File(poDirectory, keysFile).getAbsolutePath());
+            cl.createArg().setValue(potFile.getAbsolutePath());
             cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
 
-            getLog().debug("Executing: " + cl.toString());
-            StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-            StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
+            log.debug("Executing: " + cl.toString());
+            StreamConsumer out = new LoggerStreamConsumer(log, LoggerStreamConsumer.INFO);
+            StreamConsumer err = new LoggerStreamConsumer(log, LoggerStreamConsumer.WARN);
+            boolean merged = false;
+            fileMetrics.read(potFile);
             try {
-                CommandLineUtils.executeCommandLine(cl, out, err);
+                merged = fileMetrics.run(cl, out, err) == 0 && tmpFile.isFile();
             } catch (CommandLineException e) {
-                getLog().error("Could not execute " + msgmergeCmd + ".", e);
+                log.error("Could not execute " + msgmergeCmd + ".", e);
+            }
+
+            try {
+                if (merged) {
+                    if (!printPOTCreationDate) {
+                        GettextUtils.removePotCreationDate(tmpFile, fileName, log);
+                    }
+                    replace(tmpFile, file, log, fileMetrics);
+                    fingerprints.put(key, GettextUtils.sha256(key, file));
+                } else {
+                    fileMetrics.setStatus(BuildMetrics.FAILED);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + file, e);
+            } finally {
+                tmpFile.delete();
             }
+        }
+    }
+
+    /**
+     * Replaces a po file with its merged version, after a backup, unless
+     * the merge has not changed it.
+     */
+    private void replace(File tmpFile, File file, Log log, BuildMetrics.Record fileMetrics) throws IOException {
+        if (GettextUtils.contentEquals(tmpFile, file)) {
+            log.debug(file.getName() + " is up to date");
+            return;
+        }
+        backup(file, backup, log);
+        GettextUtils.replace(tmpFile, file);
+        fileMetrics.written(file);
+    }
 
-            if (!printPOTCreationDate) {
-                GettextUtils.removePotCreationDate(file, getLog());
+    private void mergeInProcess(File file, MessageMerger merger, Log log, BuildMetrics.Record fileMetrics)
+            throws MojoExecutionException {
+        try {
+            byte[] merged = merger.merge(file, sort, printPOTCreationDate, PoWriter.DEFAULT_WIDTH);
+            if (Arrays.equals(merged, Files.readAllBytes(file.toPath()))) {
+                log.debug(file.getName() + " is up to date");
+                return;
             }
+            backup(file, backup, log);
+            GettextUtils.write(file, merged);
+            fileMetrics.written(file);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to merge " + file, e);
         }
     }
 
+    /**
+     * Keeps a copy of a po file before it is rewritten, with the backup
+     * file names of msgmerge.
+     */
+    static void backup(File file, String backup, Log log) throws IOException {
+        String mode = backup.toLowerCase(Locale.ROOT);
+        if ("none".equals(mode) || "off".equals(mode)) {
+            return;
+        }
+        File simple = new File(file.getPath() + "~");
+        int next = 1;
+        while (new File(file.getPath() + ".~" + next + "~").exists()) {
+            next++;
+        }
+        boolean numbered = "numbered".equals(mode) || "t".equals(mode)
+                || ("existing".equals(mode) || "nil".equals(mode)) && next > 1;
+        File backupFile = numbered ? new File(file.getPath() + ".~" + next + "~") : simple;
+        log.debug("Backing up " + file.getName() + " to " + backupFile.getName());
+        Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
 }
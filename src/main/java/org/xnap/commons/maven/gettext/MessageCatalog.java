@@ -0,0 +1,307 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory message template. Messages added more than once are merged
+ * the way xgettext merges multiple occurrences of the same message, and the
+ * result can be written in either of the orders produced by xgettext's
+ * <code>-F</code> (<code>sort=by-file</code>) and <code>-s</code>
+ * (<code>sort=output</code>) options.
+ */
+class MessageCatalog {
+
+    private static final String PLURAL_FORMS_TEMPLATE = "Plural-Forms: nplurals=INTEGER; plural=EXPRESSION;\n";
+
+    private PoEntry header;
+    private final Map<String, PoEntry> entries = new LinkedHashMap<>();
+
+    PoEntry getHeader() {
+        return header;
+    }
+
+    void setHeader(PoEntry header) {
+        this.header = header;
+    }
+
+    Collection<PoEntry> getEntries() {
+        return entries.values();
+    }
+
+    PoEntry get(String key) {
+        return entries.get(key);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Adds a message, or merges its references, comments and flags into an
+     * already known message with the same context and id.
+     */
+    void add(PoEntry entry) {
+        if (entry.isHeader()) {
+            if (header == null) {
+                header = entry;
+            }
+            return;
+        }
+        PoEntry existing = entries.get(entry.getKey());
+        if (existing == null) {
+            entries.put(entry.getKey(), entry);
+            return;
+        }
+        addAllNew(existing.getReferences(), entry.getReferences());
+        addAllNew(existing.getExtractedComments(), entry.getExtractedComments());
+        addAllNew(existing.getFlags(), entry.getFlags());
+        if (existing.getMsgidPlural() == null && entry.getMsgidPlural() != null) {
+            existing.setMsgidPlural(entry.getMsgidPlural());
+            existing.getMsgstr().clear();
+            existing.getMsgstr().addAll(entry.getMsgstr());
+        }
+    }
+
+    /**
+     * Reads all messages of a PO or POT file into this catalog.
+     */
+    void addAll(File file) throws IOException {
+        try (PoReader reader = new PoReader(file)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                add(entry);
+            }
+        }
+    }
+
+    private static void addAllNew(List<String> target, List<String> source) {
+        for (String s : source) {
+            if (!target.contains(s)) {
+                target.add(s);
+            }
+        }
+    }
+
+    /**
+     * Returns the messages in output order.
+     *
+     * @param sort "by-file" to order by source reference like <code>xgettext -F</code>,
+     *             anything else to order by message id like <code>xgettext -s</code>
+     */
+    List<PoEntry> getSortedEntries(String sort) {
+        List<PoEntry> sorted = new ArrayList<>(entries.values());
+        if ("by-file".equalsIgnoreCase(sort)) {
+            for (PoEntry entry : sorted) {
+                entry.getReferences().sort(REFERENCE_ORDER);
+            }
+            sorted.sort(FILE_POSITION_ORDER);
+        } else {
+            sorted.sort(MSGID_ORDER);
+        }
+        return sorted;
+    }
+
+    /**
+     * Writes the catalog as UTF-8, the encoding xgettext writes templates in.
+     *
+     * @param width page width, or 0 to not wrap long lines
+     */
+    void write(File file, String sort, int width) throws IOException {
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(out, sort, width);
+        }
+    }
+
+    void write(OutputStream out, String sort, int width) throws IOException {
+        PoWriter writer = new PoWriter(out, StandardCharsets.UTF_8, width);
+        if (header != null) {
+            writer.write(header);
+        }
+        for (PoEntry entry : getSortedEntries(sort)) {
+            writer.write(entry);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Creates the header entry xgettext writes to new templates.
+     *
+     * @param packageName     the package name or <code>null</code>
+     * @param packageVersion  the package version or <code>null</code>
+     * @param bugsAddress     the address for msgid bugs or <code>null</code>
+     * @param copyrightHolder the copyright holder, <code>null</code> for a
+     *                        placeholder or empty for public domain
+     */
+    static PoEntry createTemplateHeader(String packageName, String packageVersion, String bugsAddress,
+                                        String copyrightHolder) {
+        PoEntry header = new PoEntry();
+        List<String> comments = header.getTranslatorComments();
+        comments.add("SOME DESCRIPTIVE TITLE.");
+        if (copyrightHolder == null || !copyrightHolder.isEmpty()) {
+            comments.add("Copyright (C) YEAR " + (copyrightHolder == null ? "THE PACKAGE'S COPYRIGHT HOLDER" : copyrightHolder));
+            comments.add("This file is distributed under the same license as the "
+                    + (packageName == null ? "PACKAGE" : packageName) + " package.");
+        } else {
+            comments.add("This file is put in the public domain.");
+        }
+        comments.add("FIRST AUTHOR <EMAIL@ADDRESS>, YEAR.");
+        comments.add("");
+        header.setFuzzy(true);
+        header.setMsgid("");
+        String projectIdVersion = packageName == null ? "PACKAGE VERSION"
+                : packageVersion == null ? packageName : packageName + " " + packageVersion;
+        header.setMsgstr("Project-Id-Version: " + projectIdVersion + "\n"
+                + "Report-Msgid-Bugs-To: " + (bugsAddress == null ? "" : bugsAddress) + "\n"
+                + "POT-Creation-Date: " + new SimpleDateFormat("yyyy-MM-dd HH:mmZ").format(new Date()) + "\n"
+                + "PO-Revision-Date: YEAR-MO-DA HO:MI+ZONE\n"
+                + "Last-Translator: FULL NAME <EMAIL@ADDRESS>\n"
+                + "Language-Team: LANGUAGE <LL@li.org>\n"
+                + "Language: \n"
+                + "MIME-Version: 1.0\n"
+                + "Content-Type: text/plain; charset=CHARSET\n"
+                + "Content-Transfer-Encoding: 8bit\n");
+        return header;
+    }
+
+    /**
+     * Updates the charset and the <code>Plural-Forms</code> field of a
+     * template header to match the messages, like xgettext does: the
+     * charset is <code>CHARSET</code> for pure ASCII templates and
+     * <code>UTF-8</code> otherwise, and the <code>Plural-Forms</code>
+     * placeholder is only present if a message has plural forms.
+     */
+    void updateTemplateHeader() {
+        if (header == null) {
+            return;
+        }
+        boolean ascii = true;
+        boolean plural = false;
+        for (PoEntry entry : entries.values()) {
+            ascii = ascii && isAscii(entry.getMsgid()) && isAscii(entry.getMsgidPlural()) && isAscii(entry.getMsgctxt());
+            plural = plural || entry.isPlural();
+        }
+        String value = header.getFirstMsgstr();
+        value = ascii ? value.replace("charset=UTF-8", "charset=CHARSET") : value.replace("charset=CHARSET", "charset=UTF-8");
+        if (plural && !value.contains("Plural-Forms:")) {
+            value = value + PLURAL_FORMS_TEMPLATE;
+        } else if (!plural) {
+            value = value.replace(PLURAL_FORMS_TEMPLATE, "");
+        }
+        header.setMsgstr(value);
+    }
+
+    private static boolean isAscii(String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) > 0x7f) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares strings by code point, which is the order of their UTF-8
+     * bytes as compared by the gettext tools.
+     */
+    static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca != cb) {
+                if (Character.isSurrogate(ca) != Character.isSurrogate(cb)) {
+                    // surrogates encode code points above any BMP char
+                    return Character.isSurrogate(ca) ? 1 : -1;
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static int compareContexts(String a, String b) {
+        if (a == null) {
+            return b == null ? 0 : -1;
+        }
+        return b == null ? 1 : compareCodePoints(a, b);
+    }
+
+    static String getReferenceFile(String reference) {
+        int colon = reference.lastIndexOf(':');
+        return colon == -1 || !isNumber(reference, colon + 1) ? reference : reference.substring(0, colon);
+    }
+
+    static long getReferenceLine(String reference) {
+        int colon = reference.lastIndexOf(':');
+        return colon == -1 || !isNumber(reference, colon + 1) ? -1 : Long.parseLong(reference.substring(colon + 1));
+    }
+
+    private static boolean isNumber(String s, int start) {
+        if (start >= s.length() || s.length() - start > 18) {
+            return false;
+        }
+        for (int i = start; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static final Comparator<String> REFERENCE_ORDER = (a, b) -> {
+        int result = compareCodePoints(getReferenceFile(a), getReferenceFile(b));
+        return result != 0 ? result : Long.compare(getReferenceLine(a), getReferenceLine(b));
+    };
+
+    static final Comparator<PoEntry> MSGID_ORDER = (a, b) -> {
+        int result = compareCodePoints(a.getMsgid(), b.getMsgid());
+        return result != 0 ? result : compareContexts(a.getMsgctxt(), b.getMsgctxt());
+    };
+
+    static final Comparator<PoEntry> FILE_POSITION_ORDER = (a, b) -> {
+        List<String> ra = a.getReferences();
+        List<String> rb = b.getReferences();
+        if (ra.isEmpty() || rb.isEmpty()) {
+            if (!ra.isEmpty() || !rb.isEmpty()) {
+                return ra.isEmpty() ? -1 : 1;
+            }
+        } else {
+            int result = REFERENCE_ORDER.compare(ra.get(0), rb.get(0));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return MSGID_ORDER.compare(a, b);
+    };
+}
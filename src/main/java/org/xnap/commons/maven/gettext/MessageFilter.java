@@ -0,0 +1,117 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects messages and changes their attributes like msgattrib, for the
+ * options that do not need other files:
+ * <code>--translated</code>, <code>--untranslated</code>,
+ * <code>--no-fuzzy</code>, <code>--only-fuzzy</code>,
+ * <code>--no-obsolete</code>, <code>--only-obsolete</code>,
+ * <code>--set-fuzzy</code>, <code>--clear-fuzzy</code>,
+ * <code>--set-obsolete</code>, <code>--clear-obsolete</code> and
+ * <code>--clear-previous</code>. Like msgattrib, the header entry is always
+ * kept and the attributes are only changed on the selected messages and
+ * the header, which is never made obsolete.
+ */
+class MessageFilter {
+
+    private boolean translated = true;
+    private boolean untranslated = true;
+    private boolean fuzzy = true;
+    private boolean nonFuzzy = true;
+    private boolean obsolete = true;
+    private boolean nonObsolete = true;
+    private Boolean setFuzzy;
+    private Boolean setObsolete;
+    private boolean clearPrevious;
+
+    /**
+     * @throws IllegalArgumentException if an option is not supported
+     */
+    MessageFilter(String[] options) {
+        for (String option : options == null ? new String[0] : options) {
+            if ("--translated".equals(option)) {
+                untranslated = false;
+            } else if ("--untranslated".equals(option)) {
+                translated = false;
+            } else if ("--no-fuzzy".equals(option)) {
+                fuzzy = false;
+            } else if ("--only-fuzzy".equals(option)) {
+                nonFuzzy = false;
+            } else if ("--no-obsolete".equals(option)) {
+                obsolete = false;
+            } else if ("--only-obsolete".equals(option)) {
+                nonObsolete = false;
+            } else if ("--set-fuzzy".equals(option)) {
+                setFuzzy = true;
+            } else if ("--clear-fuzzy".equals(option)) {
+                setFuzzy = false;
+            } else if ("--set-obsolete".equals(option)) {
+                setObsolete = true;
+            } else if ("--clear-obsolete".equals(option)) {
+                setObsolete = false;
+            } else if ("--clear-previous".equals(option)) {
+                clearPrevious = true;
+            } else {
+                throw new IllegalArgumentException("Unsupported msgattrib option: " + option);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the filter keeps and changes nothing
+     */
+    boolean isEmpty() {
+        return translated && untranslated && fuzzy && nonFuzzy && obsolete && nonObsolete
+                && setFuzzy == null && setObsolete == null && !clearPrevious;
+    }
+
+    /**
+     * Returns the selected messages and changes their attributes in place.
+     */
+    List<PoEntry> apply(List<PoEntry> entries) {
+        List<PoEntry> result = new ArrayList<>(entries.size());
+        for (PoEntry entry : entries) {
+            boolean header = entry.isHeader();
+            if (header || isSelected(entry)) {
+                if (setFuzzy != null) {
+                    entry.setFuzzy(setFuzzy);
+                }
+                if (setObsolete != null && !header) {
+                    entry.setObsolete(setObsolete);
+                }
+                if (clearPrevious) {
+                    entry.setPreviousMsgctxt(null);
+                    entry.setPreviousMsgid(null);
+                    entry.setPreviousMsgidPlural(null);
+                }
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private boolean isSelected(PoEntry entry) {
+        return (entry.isTranslated() ? translated : untranslated)
+                && (entry.isFuzzy() ? fuzzy : nonFuzzy)
+                && (entry.isObsolete() ? obsolete : nonObsolete);
+    }
+}
@@ -0,0 +1,199 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The message ids and contexts of all catalogs a goal reads, stored once.
+ * <p>
+ * Every locale repeats the messages of the template, so a goal that reads
+ * the po files of many locales would otherwise keep a copy of every id per
+ * locale. {@link PoReader} replaces the ids, contexts and plural ids of the
+ * entries it reads with the instances stored here, and the lookup key of
+ * every message gets a number, so that the messages of a locale can be kept
+ * as {@link Messages}: an array of numbers and the translations.
+ * <p>
+ * All methods can be called from several threads.
+ */
+class MessageKeys {
+
+    /**
+     * The keys are stored in blocks of this size, which never move, so that
+     * a key can be stored while another thread adds a block.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile String[][] blocks = new String[1][BLOCK_SIZE];
+
+    /**
+     * @return the stored instance equal to <code>s</code>
+     */
+    String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String existing = strings.putIfAbsent(s, s);
+        return existing != null ? existing : s;
+    }
+
+    /**
+     * Replaces the context, id and plural id of an entry with the stored
+     * instances.
+     */
+    void intern(PoEntry entry) {
+        entry.setMsgctxt(intern(entry.getMsgctxt()));
+        entry.setMsgid(intern(entry.getMsgid()));
+        entry.setMsgidPlural(intern(entry.getMsgidPlural()));
+    }
+
+    /**
+     * @return the number of the lookup key of an entry, see {@link PoEntry#getKey()}
+     */
+    int getId(PoEntry entry) {
+        String key = entry.getKey();
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        // without a context the key is the id itself
+        return ids.computeIfAbsent(intern(key), k -> {
+            int newId = nextId.getAndIncrement();
+            // the key is stored before the id is published by the map
+            getBlock(newId)[newId % BLOCK_SIZE] = k;
+            return newId;
+        });
+    }
+
+    private String[] getBlock(int id) {
+        int block = id / BLOCK_SIZE;
+        String[][] current = blocks;
+        if (block >= current.length) {
+            synchronized (this) {
+                current = blocks;
+                if (block >= current.length) {
+                    String[][] grown = Arrays.copyOf(current, Math.max(current.length * 2, block + 1));
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new String[BLOCK_SIZE];
+                    }
+                    blocks = grown;
+                    current = grown;
+                }
+            }
+        }
+        return current[block];
+    }
+
+    /**
+     * @param id a number returned by {@link #getId(PoEntry)}
+     */
+    String getKey(int id) {
+        return blocks[id / BLOCK_SIZE][id % BLOCK_SIZE];
+    }
+
+    int size() {
+        return nextId.get();
+    }
+
+    /**
+     * The messages of a single catalog: the numbers of their keys and
+     * their translations, in the order they were added.
+     */
+    static class Messages {
+
+        private final MessageKeys messageKeys;
+        private final BitSet added = new BitSet();
+        private int[] ids = new int[256];
+        private Object[] values = new Object[256];
+        private int size;
+
+        Messages(MessageKeys messageKeys) {
+            this.messageKeys = messageKeys;
+        }
+
+        /**
+         * Adds a message, unless a message with the same key has been
+         * added before.
+         *
+         * @return <code>false</code> if the message was a duplicate
+         */
+        boolean add(PoEntry entry) {
+            int id = messageKeys.getId(entry);
+            if (added.get(id)) {
+                return false;
+            }
+            added.set(id);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ids[size] = id;
+            values[size] = entry.isPlural() ? entry.getMsgstr().toArray(new String[0]) : entry.getFirstMsgstr();
+            size++;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String getKey(int index) {
+            return messageKeys.getKey(ids[index]);
+        }
+
+        /**
+         * @return the translation, a <code>String[]</code> of all plural
+         * forms for messages with plural forms
+         */
+        Object getValue(int index) {
+            return values[index];
+        }
+
+        boolean isPlural(int index) {
+            return values[index] instanceof String[];
+        }
+
+        /**
+         * @return the keys in the order they were added
+         */
+        List<String> getKeys() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    if (index >= size) {
+                        throw new IndexOutOfBoundsException(String.valueOf(index));
+                    }
+                    return getKey(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Merges po files with a template like <code>msgmerge -U</code>, with the
+ * template read once for all po files.
+ * <p>
+ * Messages of the template are looked up in the po file by context and id.
+ * Messages without an exact match get the translation of the most similar
+ * translated message of the po file, marked as fuzzy, unless fuzzy matching
+ * is disabled. The similar messages of a template message are searched once
+ * in a {@link FuzzyIndex} of the messages of all po files and shared by all
+ * of them. Translated messages of the po file that are no longer used are
+ * kept as obsolete messages.
+ * <p>
+ * To prepare fuzzy matching, all po files are passed to {@link #index(File)}
+ * before the first one is merged. Both can be called from several threads.
+ */
+class MessageMerger {
+
+    private static final Pattern NPLURALS = Pattern.compile("nplurals\\s*=\\s*(\\d+)");
+    private static final Pattern CHARSET = Pattern.compile("(charset=)([^\\s;]+)");
+
+    /**
+     * The header fields msgmerge takes from the template, each with the
+     * field it is inserted after if the po file does not have it.
+     */
+    private static final String[][] TEMPLATE_FIELDS = {
+            {"Report-Msgid-Bugs-To", "Project-Id-Version"},
+            {"POT-Creation-Date", "Report-Msgid-Bugs-To"},
+    };
+
+    private final MessageKeys messageKeys;
+    private final PoEntry templateHeader;
+    private final List<PoEntry> template = new ArrayList<>();
+    private final FuzzyIndex index;
+    private final ConcurrentMap<String, List<FuzzyIndex.Match>> similar = new ConcurrentHashMap<>();
+
+    /**
+     * @param fuzzyMatching propose translations of similar messages
+     * @param messageKeys   stores the message ids of the template and the po files
+     */
+    MessageMerger(File templateFile, boolean fuzzyMatching, MessageKeys messageKeys) throws IOException {
+        this.messageKeys = messageKeys;
+        PoEntry header = null;
+        try (PoReader reader = new PoReader(templateFile, messageKeys)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (entry.isHeader()) {
+                    header = entry;
+                } else if (!entry.isObsolete()) {
+                    template.add(entry);
+                }
+            }
+        }
+        this.templateHeader = header;
+        this.index = fuzzyMatching ? new FuzzyIndex() : null;
+    }
+
+    /**
+     * Adds the translated messages of a po file to the messages searched
+     * for fuzzy matches.
+     */
+    void index(File poFile) throws IOException {
+        if (index == null) {
+            return;
+        }
+        try (PoReader reader = new PoReader(poFile, messageKeys)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                index(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds the translated messages of a po file that has already been read.
+     */
+    void index(List<PoEntry> entries) {
+        if (index == null) {
+            return;
+        }
+        for (PoEntry entry : entries) {
+            index(entry);
+        }
+    }
+
+    private void index(PoEntry entry) {
+        if (!entry.isHeader() && entry.isTranslated()) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * Merges a po file with the template.
+     *
+     * @param sort "by-file" to order the messages like <code>msgmerge -F</code>,
+     *             anything else to order them like <code>msgmerge -s</code>
+     * @param potCreationDate keep the <code>POT-Creation-Date</code> header field
+     * @param width page width, or 0 to not wrap long lines
+     * @return the merged po file, in the charset of the po file if it can
+     * encode all messages, in UTF-8 otherwise
+     */
+    byte[] merge(File poFile, String sort, boolean potCreationDate, int width) throws IOException {
+        List<PoEntry> definitions = new ArrayList<>();
+        Charset charset;
+        try (PoReader reader = new PoReader(poFile, messageKeys)) {
+            charset = reader.getCharset();
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                definitions.add(entry);
+            }
+        }
+        return write(merge(definitions, sort, potCreationDate), charset, width);
+    }
+
+    /**
+     * Writes a po file like msgmerge: in the given charset if it can encode
+     * all messages, in UTF-8 otherwise.
+     *
+     * @param charset the charset of the original po file, or <code>null</code> for UTF-8
+     */
+    static byte[] write(List<PoEntry> entries, Charset charset, int width) throws IOException {
+        try {
+            return toBytes(entries, charset == null ? StandardCharsets.UTF_8 : charset, width);
+        } catch (CharacterCodingException e) {
+            PoEntry header = entries.isEmpty() ? null : entries.get(0);
+            if (header != null && header.isHeader()) {
+                Matcher matcher = CHARSET.matcher(header.getFirstMsgstr());
+                if (matcher.find()) {
+                    header.setMsgstr(matcher.replaceFirst("$1UTF-8"));
+                }
+            }
+            return toBytes(entries, StandardCharsets.UTF_8, width);
+        }
+    }
+
+    private static byte[] toBytes(List<PoEntry> entries, Charset charset, int width) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PoWriter writer = new PoWriter(new OutputStreamWriter(out, charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)), width);
+        for (PoEntry entry : entries) {
+            writer.write(entry);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Merges the messages of a po file with the template.
+     *
+     * @return the header, if any, the messages of the template in the
+     * requested order and the translated messages of the po file that the
+     * template no longer contains, marked obsolete
+     */
+    List<PoEntry> merge(List<PoEntry> definitions, String sort, boolean potCreationDate) {
+        PoEntry header = null;
+        Map<String, PoEntry> byKey = new LinkedHashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (PoEntry entry : definitions) {
+            if (entry.isHeader()) {
+                header = entry;
+            } else if (byKey.putIfAbsent(entry.getKey(), entry) == null) {
+                positions.put(entry.getKey(), positions.size());
+            }
+        }
+        header = mergeHeader(header, potCreationDate);
+        int nplurals = getPluralCount(header);
+
+        Set<PoEntry> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<PoEntry> messages = new ArrayList<>(template.size());
+        for (PoEntry reference : template) {
+            PoEntry definition = byKey.get(reference.getKey());
+            boolean fuzzy = false;
+            if (definition == null && index != null) {
+                definition = findSimilar(reference, byKey, positions);
+                fuzzy = definition != null;
+            }
+            if (definition == null) {
+                messages.add(untranslated(reference, nplurals));
+            } else {
+                used.add(definition);
+                messages.add(merge(reference, definition, fuzzy, nplurals));
+            }
+        }
+        if ("by-file".equalsIgnoreCase(sort)) {
+            for (PoEntry entry : messages) {
+                entry.getReferences().sort(MessageCatalog.REFERENCE_ORDER);
+            }
+            messages.sort(MessageCatalog.FILE_POSITION_ORDER);
+        } else {
+            messages.sort(MessageCatalog.MSGID_ORDER);
+        }
+
+        List<PoEntry> obsolete = new ArrayList<>();
+        for (PoEntry entry : byKey.values()) {
+            // msgmerge drops untranslated messages instead of making them obsolete
+            if (!used.contains(entry) && entry.isTranslated()) {
+                PoEntry copy = entry.copy();
+                copy.setObsolete(true);
+                copy.getExtractedComments().clear();
+                copy.getReferences().clear();
+                obsolete.add(copy);
+            }
+        }
+
+        List<PoEntry> result = new ArrayList<>(messages.size() + obsolete.size() + 1);
+        if (header != null) {
+            result.add(header);
+        }
+        result.addAll(messages);
+        result.addAll(obsolete);
+        return result;
+    }
+
+    /**
+     * @return the translated message of the po file that is most similar
+     * to <code>reference</code>, or <code>null</code>. Like msgmerge, the
+     * one that comes first in the po file wins a tie.
+     */
+    private PoEntry findSimilar(PoEntry reference, Map<String, PoEntry> definitions, Map<String, Integer> positions) {
+        String key = reference.getKey();
+        List<FuzzyIndex.Match> matches = similar.get(key);
+        if (matches == null) {
+            matches = index.search(reference.getMsgctxt(), reference.getMsgid());
+            similar.putIfAbsent(key, matches);
+        }
+        PoEntry best = null;
+        double bestWeight = 0;
+        int bestPosition = Integer.MAX_VALUE;
+        for (FuzzyIndex.Match match : matches) {
+            if (best != null && match.weight < bestWeight) {
+                break;
+            }
+            PoEntry definition = definitions.get(match.key);
+            if (definition != null && definition.isTranslated()) {
+                int position = positions.get(match.key);
+                if (position < bestPosition) {
+                    best = definition;
+                    bestWeight = match.weight;
+                    bestPosition = position;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Combines a message of the template with the translation of a message
+     * of the po file the way msgmerge does: the comments, references and
+     * flags are taken from the template, the translator comments and the
+     * translation from the po file.
+     */
+    private static PoEntry merge(PoEntry reference, PoEntry definition, boolean fuzzy, int nplurals) {
+        PoEntry result = new PoEntry();
+        result.getTranslatorComments().addAll(definition.getTranslatorComments());
+        result.getExtractedComments().addAll(reference.getExtractedComments());
+        result.getReferences().addAll(reference.getReferences());
+        for (String flag : reference.getFlags()) {
+            if (!PoEntry.FUZZY.equals(flag)) {
+                result.getFlags().add(flag);
+            }
+        }
+        result.setMsgctxt(reference.getMsgctxt());
+        result.setMsgid(reference.getMsgid());
+        result.setMsgidPlural(reference.getMsgidPlural());
+
+        List<String> msgstr = definition.getMsgstr();
+        if (reference.isPlural() == definition.isPlural()) {
+            result.getMsgstr().addAll(msgstr);
+        } else if (reference.isPlural()) {
+            // a singular translation is proposed for all plural forms
+            for (int i = 0; i < nplurals; i++) {
+                result.getMsgstr().add(definition.getFirstMsgstr());
+            }
+            fuzzy = true;
+        } else {
+            result.getMsgstr().add(definition.getFirstMsgstr());
+            fuzzy = true;
+        }
+
+        if (fuzzy) {
+            result.setFuzzy(true);
+        } else if (definition.isFuzzy()) {
+            result.setFuzzy(true);
+            result.setPreviousMsgctxt(definition.getPreviousMsgctxt());
+            result.setPreviousMsgid(definition.getPreviousMsgid());
+            result.setPreviousMsgidPlural(definition.getPreviousMsgidPlural());
+        }
+        return result;
+    }
+
+    private static PoEntry untranslated(PoEntry reference, int nplurals) {
+        PoEntry result = reference.copy();
+        result.setFuzzy(false);
+        result.getMsgstr().clear();
+        for (int i = 0; i < (reference.isPlural() ? nplurals : 1); i++) {
+            result.getMsgstr().add("");
+        }
+        return result;
+    }
+
+    /**
+     * Takes the <code>Report-Msgid-Bugs-To</code> and
+     * <code>POT-Creation-Date</code> fields of the template header into the
+     * header of the po file.
+     */
+    private PoEntry mergeHeader(PoEntry header, boolean potCreationDate) {
+        if (header == null) {
+            if (templateHeader == null) {
+                return null;
+            }
+            header = templateHeader;
+        }
+        header = header.copy();
+        String value = header.getFirstMsgstr();
+        if (templateHeader != null) {
+            for (String[] field : TEMPLATE_FIELDS) {
+                String templateValue = templateHeader.getHeaderField(field[0]);
+                if (templateValue != null) {
+                    value = setHeaderField(value, field[0], templateValue, field[1]);
+                }
+            }
+        }
+        if (!potCreationDate) {
+            value = setHeaderField(value, "POT-Creation-Date", null, null);
+        }
+        header.setMsgstr(value);
+        return header;
+    }
+
+    /**
+     * Replaces, inserts or removes a header field.
+     *
+     * @param value the new value, or <code>null</code> to remove the field
+     * @param after the field to insert a missing field after, or <code>null</code> to insert it first
+     */
+    static String setHeaderField(String header, String name, String value, String after) {
+        List<String> lines = new ArrayList<>(Arrays.asList(header.split("\n", -1)));
+        // the last element is the text after the final newline
+        int insertAt = 0;
+        for (int i = 0; i < lines.size() - 1; i++) {
+            String line = lines.get(i);
+            if (isField(line, name)) {
+                if (value == null) {
+                    lines.remove(i);
+                } else {
+                    lines.set(i, name + ": " + value);
+                }
+                return String.join("\n", lines);
+            }
+            if (after != null && isField(line, after)) {
+                insertAt = i + 1;
+            }
+        }
+        if (value != null) {
+            lines.add(insertAt, name + ": " + value);
+        }
+        return String.join("\n", lines);
+    }
+
+    private static boolean isField(String line, String name) {
+        return line.length() > name.length() && line.charAt(name.length()) == ':'
+                && line.regionMatches(true, 0, name, 0, name.length());
+    }
+
+    private static int getPluralCount(PoEntry header) {
+        String pluralForms = header == null ? null : header.getHeaderField("Plural-Forms");
+        if (pluralForms != null) {
+            Matcher matcher = NPLURALS.matcher(pluralForms);
+            if (matcher.find()) {
+                return Math.max(1, Integer.parseInt(matcher.group(1)));
+            }
+        }
+        return 2;
+    }
+}
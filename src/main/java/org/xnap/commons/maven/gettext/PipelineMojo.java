@@ -0,0 +1,274 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the <code>gettext</code>, <code>merge</code>, <code>attrib</code>
+ * and <code>dist</code> goals in a single pass, reading and writing every po
+ * file once.
+ * <p>
+ * After the messages are extracted, every po file is read and, with
+ * <code>merge</code>, merged with the template like the <code>merge</code>
+ * goal does with <code>inProcess</code>. The <code>msgattribArgs</code> are
+ * applied to the merged messages, the po file is written if its content
+ * has changed, and with <code>dist</code> its bundle is built from the
+ * messages in memory. Bundle formats that run msgfmt or msgcat, i.e.
+ * without <code>inProcess</code>, read the written po file again.
+ * <p>
+ * Po files that have not changed since the last run with the same template
+ * and options are not merged again.
+ */
+@Mojo(name = "pipeline", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class PipelineMojo
+        extends AbstractChainMojo {
+
+    /**
+     * Options of msgattrib to apply to every po file after merging:
+     * <code>--translated</code>, <code>--untranslated</code>,
+     * <code>--no-fuzzy</code>, <code>--only-fuzzy</code>,
+     * <code>--no-obsolete</code>, <code>--only-obsolete</code>,
+     * <code>--set-fuzzy</code>, <code>--clear-fuzzy</code>,
+     * <code>--set-obsolete</code>, <code>--clear-obsolete</code> and
+     * <code>--clear-previous</code>.
+     */
+    @Parameter(property = "msgattribArgs")
+    protected String[] msgattribArgs;
+
+    /**
+     * A po file between reading and writing.
+     */
+    private static class Catalog {
+
+        final String fileName;
+        final File file;
+        final BuildMetrics.Record fileMetrics;
+        String fingerprint;
+        Charset charset;
+        /**
+         * The messages, or <code>null</code> if the file is up to date.
+         */
+        List<PoEntry> entries;
+
+        Catalog(String fileName, File file, BuildMetrics.Record fileMetrics) {
+            this.fileName = fileName;
+            this.file = file;
+            this.fileMetrics = fileMetrics;
+        }
+
+        String getKey() {
+            return fileName.replace(File.separatorChar, '/');
+        }
+    }
+
+    public void execute()
+            throws MojoExecutionException {
+        checkConfiguration();
+        final MessageFilter filter;
+        try {
+            filter = new MessageFilter(msgattribArgs);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        super.execute();
+
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(poDirectory);
+        ds.setIncludes(new String[]{"**/*.po"});
+        ds.scan();
+        String[] files = ds.getIncludedFiles();
+        Arrays.sort(files);
+        getLog().info("Processing po files in '" + poDirectory.getAbsolutePath() + "'.");
+
+        BuildMetrics metrics = new BuildMetrics("pipeline");
+        File potFile = new File(poDirectory, keysFile);
+        File fingerprintFile = new File(workDirectory, "pipeline/" + keysFile + ".properties");
+        List<FileLocks.Lock> locks = new ArrayList<>();
+        // work directory files first, then po files in a fixed order, then the template
+        try (FileLocks.Lock fingerprintLock = FileLocks.write(fingerprintFile);
+             DistMojo.Session session = dist ? createDistMojo().open() : null) {
+            for (String fileName : files) {
+                locks.add(FileLocks.write(new File(poDirectory, fileName)));
+            }
+            locks.add(FileLocks.read(potFile));
+
+            FingerprintStore fingerprints = loadFingerprints(fingerprintFile, potFile);
+            MessageMerger merger = null;
+            if (merge) {
+                try {
+                    metrics.getGoal().read(potFile);
+                    merger = new MessageMerger(potFile, !noFuzzyMatching, getMessageKeys());
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Unable to read " + potFile, e);
+                }
+            }
+
+            List<Catalog> catalogs = new ArrayList<>(files.length);
+            for (String fileName : files) {
+                catalogs.add(new Catalog(fileName, new File(poDirectory, fileName), metrics.file(fileName)));
+            }
+            // all po files are read before merging, so that fuzzy matching finds the messages of all of them
+            final MessageMerger indexer = merger;
+            List<TaskExecutor.Task> tasks = new ArrayList<>(catalogs.size());
+            for (final Catalog catalog : catalogs) {
+                tasks.add(log -> read(catalog, fingerprints, indexer));
+            }
+            TaskExecutor.execute(tasks, threads, getLog());
+
+            final MessageMerger messageMerger = merger;
+            tasks.clear();
+            for (final Catalog catalog : catalogs) {
+                tasks.add(log -> {
+                    try {
+                        process(catalog, messageMerger, filter, fingerprints, session, log);
+                    } catch (MojoExecutionException | RuntimeException e) {
+                        catalog.fileMetrics.setStatus(BuildMetrics.FAILED);
+                        throw e;
+                    } finally {
+                        catalog.fileMetrics.finish();
+                    }
+                });
+            }
+            try {
+                TaskExecutor.execute(tasks, threads, getLog());
+            } finally {
+                try {
+                    fingerprints.save();
+                } catch (IOException e) {
+                    getLog().warn("Could not save pipeline fingerprints: " + e.getMessage());
+                }
+            }
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).close();
+            }
+            metrics.write(metricsDirectory, executionId, getLog());
+        }
+    }
+
+    /**
+     * Loads the fingerprints of the po files written by the last run. They
+     * are discarded if the template or the options have changed since.
+     */
+    private FingerprintStore loadFingerprints(File fingerprintFile, File potFile)
+            throws MojoExecutionException {
+        FingerprintStore fingerprints = FingerprintStore.load(fingerprintFile);
+        String pot;
+        try {
+            pot = potFile.isFile() ? GettextUtils.sha256(keysFile, potFile) : "";
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + potFile, e);
+        }
+        String options = GettextUtils.sha256(String.valueOf(merge), sort, String.valueOf(noFuzzyMatching),
+                String.valueOf(printPOTCreationDate), String.valueOf(nowrap),
+                msgattribArgs == null ? "" : StringUtils.join(msgattribArgs, "\0"));
+        if (!fingerprints.matches("pot", pot) || !fingerprints.matches("options", options)) {
+            fingerprints.clear();
+            fingerprints.put("pot", pot);
+            fingerprints.put("options", options);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Reads a po file and, unless it is up to date, its messages, which
+     * are added to the fuzzy matching index of the merger.
+     */
+    private void read(Catalog catalog, FingerprintStore fingerprints, MessageMerger merger)
+            throws MojoExecutionException {
+        try {
+            byte[] content = Files.readAllBytes(catalog.file.toPath());
+            catalog.fileMetrics.read(catalog.file);
+            catalog.fingerprint = GettextUtils.sha256(catalog.getKey(), content);
+            if (fingerprints.matches("po." + catalog.getKey(), catalog.fingerprint)) {
+                return;
+            }
+            List<PoEntry> entries = new ArrayList<>();
+            try (PoReader reader = new PoReader(new ByteArrayInputStream(content), catalog.file.getPath(),
+                    getMessageKeys())) {
+                catalog.charset = reader.getCharset();
+                PoEntry entry;
+                while ((entry = reader.next()) != null) {
+                    entries.add(entry);
+                }
+            }
+            if (merger != null) {
+                merger.index(entries);
+            }
+            catalog.entries = entries;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + catalog.file, e);
+        }
+    }
+
+    /**
+     * Merges and filters the messages of a po file, writes it if it has
+     * changed and builds its bundle.
+     */
+    private void process(Catalog catalog, MessageMerger merger, MessageFilter filter, FingerprintStore fingerprints,
+            DistMojo.Session session, Log log) throws MojoExecutionException {
+        log.info("Processing " + catalog.fileName);
+        List<PoEntry> entries = catalog.entries;
+        String fingerprint = catalog.fingerprint;
+        if (entries == null) {
+            log.info("Skipping " + catalog.fileName + ", it has not changed since the last run");
+            catalog.fileMetrics.setStatus(BuildMetrics.SKIPPED);
+        } else if (merger != null || !filter.isEmpty()) {
+            if (merger != null) {
+                entries = merger.merge(entries, sort, printPOTCreationDate);
+            } else if (!printPOTCreationDate && !entries.isEmpty() && entries.get(0).isHeader()) {
+                PoEntry header = entries.get(0);
+                header.setMsgstr(MessageMerger.setHeaderField(header.getFirstMsgstr(), "POT-Creation-Date", null, null));
+            }
+            entries = filter.apply(entries);
+            try {
+                byte[] content = MessageMerger.write(entries, catalog.charset, nowrap ? 0 : PoWriter.DEFAULT_WIDTH);
+                String written = GettextUtils.sha256(catalog.getKey(), content);
+                if (!written.equals(fingerprint)) {
+                    MergeMojo.backup(catalog.file, backup, log);
+                    GettextUtils.write(catalog.file, content);
+                    catalog.fileMetrics.written(catalog.file);
+                    fingerprint = written;
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to write " + catalog.file, e);
+            }
+        }
+        if (entries != null) {
+            fingerprints.put("po." + catalog.getKey(), fingerprint);
+        }
+        if (session != null) {
+            session.generate(catalog.fileName, catalog.file, fingerprint, entries, log, catalog.fileMetrics);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The <code>plural=</code> expression of a <code>Plural-Forms</code> header,
+ * e.g. <code>n%10==1 &amp;&amp; n%100!=11 ? 0 : 1</code>.
+ * <p>
+ * Supports the C subset accepted by gettext. Like in the classes msgfmt
+ * generates, all arithmetic is done on <code>long</code> values and
+ * conditions evaluate to 0 or 1.
+ */
+class PluralExpression {
+
+    /**
+     * The expression gettext uses if a catalog has no <code>Plural-Forms</code> header.
+     */
+    static final String DEFAULT = "n != 1";
+
+    private final String source;
+    private final Node root;
+    private int position;
+
+    private PluralExpression(String source) {
+        this.source = source;
+        this.root = parseConditional();
+        skipWhitespace();
+        if (position != source.length()) {
+            throw error("unexpected character");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    static PluralExpression parse(String expression) {
+        return new PluralExpression(expression);
+    }
+
+    /**
+     * Extracts the plural expression from the header entry of a catalog.
+     *
+     * @return the expression or {@link #DEFAULT} if the header does not define one
+     */
+    static PluralExpression fromHeader(PoEntry header) {
+        String pluralForms = header == null ? null : header.getHeaderField("Plural-Forms");
+        if (pluralForms != null) {
+            int start = pluralForms.indexOf("plural=");
+            if (start != -1) {
+                start += "plural=".length();
+                int end = pluralForms.indexOf(';', start);
+                return parse(end == -1 ? pluralForms.substring(start) : pluralForms.substring(start, end));
+            }
+        }
+        return parse(DEFAULT);
+    }
+
+    /**
+     * Returns the number of plural forms from a header entry.
+     *
+     * @return <code>nplurals</code> or 2 if the header does not define it
+     */
+    static int getPluralCount(PoEntry header) {
+        String pluralForms = header == null ? null : header.getHeaderField("Plural-Forms");
+        if (pluralForms != null) {
+            int start = pluralForms.indexOf("nplurals=");
+            if (start != -1) {
+                start += "nplurals=".length();
+                int end = start;
+                while (end < pluralForms.length() && Character.isDigit(pluralForms.charAt(end))) {
+                    end++;
+                }
+                if (end > start) {
+                    return Integer.parseInt(pluralForms.substring(start, end));
+                }
+            }
+        }
+        return 2;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    long evaluate(long n) {
+        return root.evaluate(n);
+    }
+
+    /**
+     * Emits code that evaluates the expression for the <code>long</code> in
+     * local variable 0 and leaves the result on the stack.
+     */
+    void compile(ClassFileWriter.Code code) {
+        root.compile(code);
+    }
+
+    /**
+     * Returns a Java expression of type <code>long</code> that evaluates
+     * the expression for the <code>long</code> variable <code>n</code>.
+     */
+    String toJava() {
+        return root.toJava();
+    }
+
+    /**
+     * @return the number of operand stack slots needed by {@link #compile}
+     */
+    int getMaxStack() {
+        return root.getMaxStack();
+    }
+
+    private Node parseConditional() {
+        Node condition = parseBinary(0);
+        skipWhitespace();
+        if (peek('?')) {
+            position++;
+            Node whenTrue = parseConditional();
+            skipWhitespace();
+            if (!peek(':')) {
+                throw error("':' expected");
+            }
+            position++;
+            Node whenFalse = parseConditional();
+            return new Conditional(condition, whenTrue, whenFalse);
+        }
+        return condition;
+    }
+
+    private static final String[][] OPERATORS = {
+            {"||"},
+            {"&&"},
+            {"==", "!="},
+            {"<=", ">=", "<", ">"},
+            {"+", "-"},
+            {"*", "/", "%"},
+    };
+
+    private Node parseBinary(int level) {
+        if (level == OPERATORS.length) {
+            return parseUnary();
+        }
+        Node left = parseBinary(level + 1);
+        while (true) {
+            skipWhitespace();
+            String operator = null;
+            for (String candidate : OPERATORS[level]) {
+                if (source.startsWith(candidate, position)) {
+                    operator = candidate;
+                    break;
+                }
+            }
+            if (operator == null) {
+                return left;
+            }
+            position += operator.length();
+            left = new Binary(operator, left, parseBinary(level + 1));
+        }
+    }
+
+    private Node parseUnary() {
+        skipWhitespace();
+        if (peek('!')) {
+            position++;
+            return new Not(parseUnary());
+        }
+        if (peek('(')) {
+            position++;
+            Node node = parseConditional();
+            skipWhitespace();
+            if (!peek(')')) {
+                throw error("')' expected");
+            }
+            position++;
+            return node;
+        }
+        if (peek('n')) {
+            position++;
+            return new Variable();
+        }
+        int start = position;
+        while (position < source.length() && Character.isDigit(source.charAt(position))) {
+            position++;
+        }
+        if (start == position) {
+            throw error("operand expected");
+        }
+        return new Number(Long.parseLong(source.substring(start, position)));
+    }
+
+    private boolean peek(char c) {
+        return position < source.length() && source.charAt(position) == c;
+    }
+
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid plural expression '" + source + "' at position "
+                + position + ": " + message);
+    }
+
+    private abstract static class Node {
+        abstract long evaluate(long n);
+
+        abstract void compile(ClassFileWriter.Code code);
+
+        abstract int getMaxStack();
+
+        abstract String toJava();
+
+        /**
+         * @return a Java condition that is true if the value is not zero
+         */
+        String toJavaTest() {
+            return toJava() + " != 0";
+        }
+
+        /**
+         * Compiles a comparison of the value of this node with zero and a
+         * conditional jump to <code>target</code>.
+         */
+        void compileTest(ClassFileWriter.Code code, int opcode, ClassFileWriter.Label target) {
+            compile(code);
+            code.op(ClassFileWriter.LCONST_0).op(ClassFileWriter.LCMP).jump(opcode, target);
+        }
+
+        /**
+         * Compiles code that pushes 0, or 1 if it is entered through <code>whenTrue</code>.
+         */
+        static void compileBoolean(ClassFileWriter.Code code, ClassFileWriter.Label whenTrue) {
+            ClassFileWriter.Label end = new ClassFileWriter.Label();
+            code.op(ClassFileWriter.LCONST_0).jump(ClassFileWriter.GOTO, end);
+            code.mark(whenTrue).op(ClassFileWriter.LCONST_1);
+            code.mark(end);
+        }
+    }
+
+    private static class Variable extends Node {
+        long evaluate(long n) {
+            return n;
+        }
+
+        void compile(ClassFileWriter.Code code) {
+            code.local(ClassFileWriter.LLOAD, 0);
+        }
+
+        String toJava() {
+            return "n";
+        }
+
+        int getMaxStack() {
+            return 2;
+        }
+    }
+
+    private static class Number extends Node {
+        private final long value;
+
+        Number(long value) {
+            this.value = value;
+        }
+
+        long evaluate(long n) {
+            return value;
+        }
+
+        void compile(ClassFileWriter.Code code) {
+            code.pushLong(value);
+        }
+
+        String toJava() {
+            return value + "L";
+        }
+
+        int getMaxStack() {
+            return 2;
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        long evaluate(long n) {
+            return operand.evaluate(n) == 0 ? 1 : 0;
+        }
+
+        void compile(ClassFileWriter.Code code) {
+            ClassFileWriter.Label whenTrue = new ClassFileWriter.Label();
+            operand.compileTest(code, ClassFileWriter.IFEQ, whenTrue);
+            compileBoolean(code, whenTrue);
+        }
+
+        int getMaxStack() {
+            return Math.max(operand.getMaxStack(), 4);
+        }
+
+        String toJava() {
+            return "(" + operand.toJava() + " == 0 ? 1L : 0L)";
+        }
+    }
+
+    private static class Conditional extends Node {
+        private final Node condition;
+        private final Node whenTrue;
+        private final Node whenFalse;
+
+        Conditional(Node condition, Node whenTrue, Node whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+
+        long evaluate(long n) {
+            return condition.evaluate(n) != 0 ? whenTrue.evaluate(n) : whenFalse.evaluate(n);
+        }
+
+        void compile(ClassFileWriter.Code code) {
+            ClassFileWriter.Label otherwise = new ClassFileWriter.Label();
+            ClassFileWriter.Label end = new ClassFileWriter.Label();
+            condition.compileTest(code, ClassFileWriter.IFEQ, otherwise);
+            whenTrue.compile(code);
+            code.jump(ClassFileWriter.GOTO, end);
+            code.mark(otherwise);
+            whenFalse.compile(code);
+            code.mark(end);
+        }
+
+        int getMaxStack() {
+            return Math.max(Math.max(condition.getMaxStack(), 4), Math.max(whenTrue.getMaxStack(), whenFalse.getMaxStack()));
+        }
+
+        String toJava() {
+            return "(" + condition.toJavaTest() + " ? " + whenTrue.toJava() + " : " + whenFalse.toJava() + ")";
+        }
+    }
+
+    private static class Binary extends Node {
+        private final String operator;
+        private final Node left;
+        private final Node right;
+
+        Binary(String operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        long evaluate(long n) {
+            if ("||".equals(operator)) {
+                return left.evaluate(n) != 0 || right.evaluate(n) != 0 ? 1 : 0;
+            } else if ("&&".equals(operator)) {
+                return left.evaluate(n) != 0 && right.evaluate(n) != 0 ? 1 : 0;
+            }
+            long a = left.evaluate(n);
+            long b = right.evaluate(n);
+            switch (operator) {
+                case "==": return a == b ? 1 : 0;
+                case "!=": return a != b ? 1 : 0;
+                case "<": return a < b ? 1 : 0;
+                case ">": return a > b ? 1 : 0;
+                case "<=": return a <= b ? 1 : 0;
+                case ">=": return a >= b ? 1 : 0;
+                case "+": return a + b;
+                case "-": return a - b;
+                case "*": return a * b;
+                case "/": return a / b;
+                default: return a % b;
+            }
+        }
+
+        void compile(ClassFileWriter.Code code) {
+            ClassFileWriter.Label whenTrue = new ClassFileWriter.Label();
+            if ("||".equals(operator)) {
+                left.compileTest(code, ClassFileWriter.IFNE, whenTrue);
+                right.compileTest(code, ClassFileWriter.IFNE, whenTrue);
+                compileBoolean(code, whenTrue);
+                return;
+            } else if ("&&".equals(operator)) {
+                ClassFileWriter.Label whenFalse = new ClassFileWriter.Label();
+                ClassFileWriter.Label end = new ClassFileWriter.Label();
+                left.compileTest(code, ClassFileWriter.IFEQ, whenFalse);
+                right.compileTest(code, ClassFileWriter.IFEQ, whenFalse);
+                code.op(ClassFileWriter.LCONST_1).jump(ClassFileWriter.GOTO, end);
+                code.mark(whenFalse).op(ClassFileWriter.LCONST_0);
+                code.mark(end);
+                return;
+            }
+            left.compile(code);
+            right.compile(code);
+            switch (operator) {
+                case "+": code.op(ClassFileWriter.LADD); return;
+                case "-": code.op(ClassFileWriter.LSUB); return;
+                case "*": code.op(ClassFileWriter.LMUL); return;
+                case "/": code.op(ClassFileWriter.LDIV); return;
+                case "%": code.op(ClassFileWriter.LREM); return;
+                default:
+            }
+            code.op(ClassFileWriter.LCMP);
+            switch (operator) {
+                case "==": code.jump(ClassFileWriter.IFEQ, whenTrue); break;
+                case "!=": code.jump(ClassFileWriter.IFNE, whenTrue); break;
+                case "<": code.jump(ClassFileWriter.IFLT, whenTrue); break;
+                case ">": code.jump(ClassFileWriter.IFGT, whenTrue); break;
+                case "<=": code.jump(ClassFileWriter.IFLE, whenTrue); break;
+                default: code.jump(ClassFileWriter.IFGE, whenTrue); break;
+            }
+            compileBoolean(code, whenTrue);
+        }
+
+        int getMaxStack() {
+            return Math.max(Math.max(left.getMaxStack(), 2 + right.getMaxStack()), 4);
+        }
+
+        String toJava() {
+            return isCondition() ? "(" + toJavaTest() + " ? 1L : 0L)" : "(" + left.toJava() + " " + operator + " " + right.toJava() + ")";
+        }
+
+        @Override
+        String toJavaTest() {
+            if ("||".equals(operator) || "&&".equals(operator)) {
+                return "(" + left.toJavaTest() + ") " + operator + " (" + right.toJavaTest() + ")";
+            }
+            return isCondition() ? left.toJava() + " " + operator + " " + right.toJava() : super.toJavaTest();
+        }
+
+        private boolean isCondition() {
+            return !"+".equals(operator) && !"-".equals(operator) && !"*".equals(operator)
+                    && !"/".equals(operator) && !"%".equals(operator);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single message of a PO or POT file, including its comments.
+ *
+ * @see PoReader
+ * @see PoWriter
+ */
+public class PoEntry {
+
+    /**
+     * Separates the context from the message id in the keys of generated
+     * resource bundles, same as msgfmt does.
+     */
+    public static final char CONTEXT_SEPARATOR = '\u0004';
+
+    public static final String FUZZY = "fuzzy";
+
+    private final List<String> translatorComments = new ArrayList<>();
+    private final List<String> extractedComments = new ArrayList<>();
+    private final List<String> references = new ArrayList<>();
+    private final List<String> flags = new ArrayList<>();
+    private String previousMsgctxt;
+    private String previousMsgid;
+    private String previousMsgidPlural;
+    private String msgctxt;
+    private String msgid;
+    private String msgidPlural;
+    private final List<String> msgstr = new ArrayList<>();
+    private boolean obsolete;
+
+    /**
+     * Comments written by translators (<code># </code> lines), without the comment marker.
+     */
+    public List<String> getTranslatorComments() {
+        return translatorComments;
+    }
+
+    /**
+     * Comments extracted from the source code (<code>#. </code> lines), without the comment marker.
+     */
+    public List<String> getExtractedComments() {
+        return extractedComments;
+    }
+
+    /**
+     * Source references (<code>#: </code> lines), one <code>file:line</code> item per element.
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * Flags (<code>#, </code> lines) such as <code>fuzzy</code> or <code>java-format</code>.
+     */
+    public List<String> getFlags() {
+        return flags;
+    }
+
+    public boolean isFuzzy() {
+        return flags.contains(FUZZY);
+    }
+
+    public void setFuzzy(boolean fuzzy) {
+        if (fuzzy && !isFuzzy()) {
+            flags.add(0, FUZZY);
+        } else if (!fuzzy) {
+            flags.remove(FUZZY);
+        }
+    }
+
+    public String getPreviousMsgctxt() {
+        return previousMsgctxt;
+    }
+
+    public void setPreviousMsgctxt(String previousMsgctxt) {
+        this.previousMsgctxt = previousMsgctxt;
+    }
+
+    public String getPreviousMsgid() {
+        return previousMsgid;
+    }
+
+    public void setPreviousMsgid(String previousMsgid) {
+        this.previousMsgid = previousMsgid;
+    }
+
+    public String getPreviousMsgidPlural() {
+        return previousMsgidPlural;
+    }
+
+    public void setPreviousMsgidPlural(String previousMsgidPlural) {
+        this.previousMsgidPlural = previousMsgidPlural;
+    }
+
+    /**
+     * @return the message context or <code>null</code> if the message has no context
+     */
+    public String getMsgctxt() {
+        return msgctxt;
+    }
+
+    public void setMsgctxt(String msgctxt) {
+        this.msgctxt = msgctxt;
+    }
+
+    public String getMsgid() {
+        return msgid;
+    }
+
+    public void setMsgid(String msgid) {
+        this.msgid = msgid;
+    }
+
+    /**
+     * @return the plural message id or <code>null</code> if the message has no plural forms
+     */
+    public String getMsgidPlural() {
+        return msgidPlural;
+    }
+
+    public void setMsgidPlural(String msgidPlural) {
+        this.msgidPlural = msgidPlural;
+    }
+
+    public boolean isPlural() {
+        return msgidPlural != null;
+    }
+
+    /**
+     * The translations. Contains a single element for singular messages and
+     * one element per plural form otherwise.
+     */
+    public List<String> getMsgstr() {
+        return msgstr;
+    }
+
+    /**
+     * @return the translation, or the first plural form
+     */
+    public String getFirstMsgstr() {
+        return msgstr.isEmpty() ? "" : msgstr.get(0);
+    }
+
+    public void setMsgstr(String value) {
+        msgstr.clear();
+        msgstr.add(value);
+    }
+
+    /**
+     * Obsolete messages are written with a <code>#~</code> prefix.
+     */
+    public boolean isObsolete() {
+        return obsolete;
+    }
+
+    public void setObsolete(boolean obsolete) {
+        this.obsolete = obsolete;
+    }
+
+    /**
+     * @return a deep copy of this entry
+     */
+    public PoEntry copy() {
+        PoEntry copy = new PoEntry();
+        copy.translatorComments.addAll(translatorComments);
+        copy.extractedComments.addAll(extractedComments);
+        copy.references.addAll(references);
+        copy.flags.addAll(flags);
+        copy.previousMsgctxt = previousMsgctxt;
+        copy.previousMsgid = previousMsgid;
+        copy.previousMsgidPlural = previousMsgidPlural;
+        copy.msgctxt = msgctxt;
+        copy.msgid = msgid;
+        copy.msgidPlural = msgidPlural;
+        copy.msgstr.addAll(msgstr);
+        copy.obsolete = obsolete;
+        return copy;
+    }
+
+    /**
+     * @return <code>true</code> if this is the header entry, i.e. a message with an empty id and no context
+     */
+    public boolean isHeader() {
+        return !obsolete && msgctxt == null && "".equals(msgid);
+    }
+
+    /**
+     * @return <code>true</code> if the first translation is not empty, like msgfmt checks it
+     */
+    public boolean isTranslated() {
+        return getFirstMsgstr().length() > 0;
+    }
+
+    /**
+     * @return <code>true</code> if msgfmt includes this message in compiled
+     * catalogs: it is translated, not obsolete and, unless it is the header,
+     * not fuzzy
+     */
+    public boolean isCompiled() {
+        return !obsolete && isTranslated() && (!isFuzzy() || isHeader());
+    }
+
+    /**
+     * @return the lookup key msgfmt uses for this message in generated resource bundles
+     */
+    public String getKey() {
+        return msgctxt == null ? msgid : msgctxt + CONTEXT_SEPARATOR + msgid;
+    }
+
+    /**
+     * Returns the value of a field of the header entry.
+     *
+     * @param name the field name, e.g. <code>Last-Translator</code>, compared ignoring case
+     * @return the trimmed value or <code>null</code> if the field is not present
+     */
+    public String getHeaderField(String name) {
+        String header = getFirstMsgstr();
+        int start = 0;
+        while (start < header.length()) {
+            int end = header.indexOf('\n', start);
+            if (end == -1) {
+                end = header.length();
+            }
+            int colon = header.indexOf(':', start);
+            if (colon != -1 && colon < end && colon - start == name.length()
+                    && header.regionMatches(true, start, name, 0, name.length())) {
+                return header.substring(colon + 1, end).trim();
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+}
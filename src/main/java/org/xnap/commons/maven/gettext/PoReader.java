@@ -0,0 +1,439 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming parser for PO and POT files. Entries are read one at a time with
+ * {@link #next()}, so memory use does not depend on the size of the catalog.
+ * <p>
+ * When reading from a stream, the character set is taken from the
+ * <code>Content-Type</code> field of the header entry. Templates that still
+ * contain the <code>charset=CHARSET</code> placeholder are read as UTF-8.
+ */
+public class PoReader implements Closeable {
+
+    /**
+     * Number of bytes inspected to find the charset of the header entry.
+     */
+    private static final int HEADER_PROBE_SIZE = 16384;
+
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("Content-Type:[^\"\\n]*?charset=([^\\s\"\\\\]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final BufferedReader reader;
+    private final Charset charset;
+    private final String name;
+    private int lineNumber;
+    private String pushedBack;
+    private MessageKeys messageKeys;
+
+    public PoReader(File file) throws IOException {
+        this(new FileInputStream(file), file.getPath());
+    }
+
+    /**
+     * @param messageKeys stores the ids and contexts of the entries that are read
+     */
+    PoReader(File file, MessageKeys messageKeys) throws IOException {
+        this(file);
+        this.messageKeys = messageKeys;
+    }
+
+    /**
+     * @param messageKeys stores the ids and contexts of the entries that are read
+     */
+    PoReader(InputStream in, String name, MessageKeys messageKeys) throws IOException {
+        this(in, name);
+        this.messageKeys = messageKeys;
+    }
+
+    public PoReader(InputStream in, String name) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream(in, 65536);
+        try {
+            this.charset = detectCharset(bin);
+        } catch (IOException e) {
+            bin.close();
+            throw e;
+        }
+        this.reader = new BufferedReader(new InputStreamReader(bin, charset), 65536);
+        this.name = name;
+    }
+
+    public PoReader(Reader reader, String name) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.charset = null;
+        this.name = name;
+    }
+
+    /**
+     * @return the charset the file is decoded with, or <code>null</code> if
+     * this reader was created for a character stream
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Determines the charset from the header entry and resets the stream to
+     * the beginning of the first entry.
+     */
+    static Charset detectCharset(BufferedInputStream in) throws IOException {
+        in.mark(HEADER_PROBE_SIZE);
+        byte[] probe = new byte[HEADER_PROBE_SIZE];
+        int length = 0;
+        int n;
+        while (length < probe.length && (n = in.read(probe, length, probe.length - length)) != -1) {
+            length += n;
+        }
+        in.reset();
+
+        if (length >= 3 && (probe[0] & 0xff) == 0xef && (probe[1] & 0xff) == 0xbb && (probe[2] & 0xff) == 0xbf) {
+            // skip byte order mark
+            in.skip(3);
+            return StandardCharsets.UTF_8;
+        }
+
+        String text = new String(probe, 0, length, StandardCharsets.ISO_8859_1);
+        // only look at the first entry
+        int msgstr = text.indexOf("msgstr");
+        if (msgstr != -1) {
+            int end = text.indexOf("\n\n", msgstr);
+            if (end == -1) {
+                end = text.indexOf("\r\n\r\n", msgstr);
+            }
+            if (end != -1) {
+                text = text.substring(0, end);
+            }
+        }
+        Matcher m = CHARSET_PATTERN.matcher(text);
+        if (m.find()) {
+            String name = m.group(1);
+            try {
+                if (!"CHARSET".equals(name) && Charset.isSupported(name)) {
+                    return Charset.forName(name);
+                }
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                // fall through
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Reads the next entry.
+     *
+     * @return the entry or <code>null</code> if the end of the file has been reached
+     * @throws IOException if reading fails or the file has a syntax error
+     */
+    public PoEntry next() throws IOException {
+        PoEntry entry = readEntry();
+        if (entry != null && messageKeys != null) {
+            messageKeys.intern(entry);
+        }
+        return entry;
+    }
+
+    private PoEntry readEntry() throws IOException {
+        PoEntry entry = null;
+        boolean seenMsgstr = false;
+        // the field that continuation lines are appended to
+        String field = null;
+        int pluralIndex = 0;
+
+        String line;
+        while ((line = readLine()) != null) {
+            String text = stripLeading(line);
+            if (text.isEmpty()) {
+                if (seenMsgstr) {
+                    return entry;
+                }
+                continue;
+            }
+
+            boolean obsolete = false;
+            if (text.startsWith("#~")) {
+                obsolete = true;
+                text = text.substring(2);
+                if (!text.startsWith("|")) {
+                    text = stripLeading(text);
+                    if (text.isEmpty()) {
+                        continue;
+                    }
+                } else {
+                    text = "#" + text;
+                }
+            }
+
+            if (text.charAt(0) == '#') {
+                if (seenMsgstr) {
+                    pushedBack = line;
+                    lineNumber--;
+                    return entry;
+                }
+                if (entry == null) {
+                    entry = new PoEntry();
+                }
+                char type = text.length() > 1 ? text.charAt(1) : ' ';
+                if (type == '.') {
+                    entry.getExtractedComments().add(stripSpace(text.substring(2)));
+                } else if (type == ':') {
+                    for (String reference : text.substring(2).trim().split("\\s+")) {
+                        if (!reference.isEmpty()) {
+                            entry.getReferences().add(reference);
+                        }
+                    }
+                } else if (type == ',') {
+                    for (String flag : text.substring(2).split(",")) {
+                        flag = flag.trim();
+                        if (!flag.isEmpty() && !entry.getFlags().contains(flag)) {
+                            entry.getFlags().add(flag);
+                        }
+                    }
+                } else if (type == '|') {
+                    String previous = stripLeading(text.substring(2));
+                    if (previous.startsWith("\"")) {
+                        if (field == null || !field.startsWith("#|")) {
+                            throw syntaxError("unexpected string");
+                        }
+                        appendPrevious(entry, field, parseString(previous));
+                    } else {
+                        field = "#|" + keyword(previous);
+                        appendPrevious(entry, field, parseString(previous));
+                    }
+                } else {
+                    entry.getTranslatorComments().add(stripSpace(text.substring(1)));
+                }
+                continue;
+            }
+
+            if (entry == null) {
+                entry = new PoEntry();
+            }
+            if (seenMsgstr && text.charAt(0) != '"') {
+                String keyword = keyword(text);
+                if ("msgctxt".equals(keyword) || "msgid".equals(keyword)) {
+                    // the line starts the next entry, which may or may not be obsolete
+                    pushedBack = line;
+                    lineNumber--;
+                    return entry;
+                }
+            }
+            if (obsolete) {
+                entry.setObsolete(true);
+            }
+
+            if (text.charAt(0) == '"') {
+                if (field == null || field.startsWith("#|")) {
+                    throw syntaxError("unexpected string");
+                }
+                String value = parseString(text);
+                if ("msgctxt".equals(field)) {
+                    entry.setMsgctxt(entry.getMsgctxt() + value);
+                } else if ("msgid".equals(field)) {
+                    entry.setMsgid(entry.getMsgid() + value);
+                } else if ("msgid_plural".equals(field)) {
+                    entry.setMsgidPlural(entry.getMsgidPlural() + value);
+                } else {
+                    List<String> msgstr = entry.getMsgstr();
+                    msgstr.set(pluralIndex, msgstr.get(pluralIndex) + value);
+                }
+                continue;
+            }
+
+            String keyword = keyword(text);
+            String value = parseString(text);
+            if ("msgctxt".equals(keyword) || "msgid".equals(keyword)) {
+                if (entry.getMsgid() != null) {
+                    throw syntaxError("missing msgstr");
+                }
+                if ("msgctxt".equals(keyword)) {
+                    if (entry.getMsgctxt() != null) {
+                        throw syntaxError("duplicate msgctxt");
+                    }
+                    entry.setMsgctxt(value);
+                } else {
+                    entry.setMsgid(value);
+                }
+            } else if ("msgid_plural".equals(keyword)) {
+                if (entry.getMsgid() == null || seenMsgstr) {
+                    throw syntaxError("unexpected msgid_plural");
+                }
+                entry.setMsgidPlural(value);
+            } else if (keyword.startsWith("msgstr")) {
+                if (entry.getMsgid() == null) {
+                    throw syntaxError("missing msgid");
+                }
+                pluralIndex = 0;
+                if (keyword.length() > 6) {
+                    if (!keyword.endsWith("]") || keyword.charAt(6) != '[') {
+                        throw syntaxError("invalid keyword " + keyword);
+                    }
+                    try {
+                        pluralIndex = Integer.parseInt(keyword.substring(7, keyword.length() - 1));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("invalid plural index in " + keyword);
+                    }
+                }
+                List<String> msgstr = entry.getMsgstr();
+                while (msgstr.size() <= pluralIndex) {
+                    msgstr.add("");
+                }
+                msgstr.set(pluralIndex, value);
+                seenMsgstr = true;
+            } else {
+                throw syntaxError("invalid keyword " + keyword);
+            }
+            field = keyword.startsWith("msgstr") ? "msgstr" : keyword;
+        }
+
+        if (entry != null && !seenMsgstr) {
+            if (entry.getMsgid() != null) {
+                throw syntaxError("missing msgstr");
+            }
+            // trailing comments without a message
+            return null;
+        }
+        return entry;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        lineNumber++;
+        if (pushedBack != null) {
+            String line = pushedBack;
+            pushedBack = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private void appendPrevious(PoEntry entry, String field, String value) throws IOException {
+        if ("#|msgctxt".equals(field)) {
+            entry.setPreviousMsgctxt(entry.getPreviousMsgctxt() == null ? value : entry.getPreviousMsgctxt() + value);
+        } else if ("#|msgid".equals(field)) {
+            entry.setPreviousMsgid(entry.getPreviousMsgid() == null ? value : entry.getPreviousMsgid() + value);
+        } else if ("#|msgid_plural".equals(field)) {
+            entry.setPreviousMsgidPlural(entry.getPreviousMsgidPlural() == null ? value : entry.getPreviousMsgidPlural() + value);
+        } else {
+            throw syntaxError("invalid previous keyword " + field.substring(2));
+        }
+    }
+
+    private String keyword(String text) throws IOException {
+        int i = 0;
+        while (i < text.length() && text.charAt(i) != '"' && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i == 0) {
+            throw syntaxError("keyword expected");
+        }
+        return text.substring(0, i);
+    }
+
+    private String parseString(String text) throws IOException {
+        int start = text.indexOf('"');
+        if (start == -1) {
+            throw syntaxError("string expected");
+        }
+        StringBuilder sb = new StringBuilder(text.length() - start);
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                return sb.toString();
+            } else if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i == text.length()) {
+                break;
+            }
+            c = text.charAt(i++);
+            switch (c) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'a': sb.append('\u0007'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'v': sb.append('\u000b'); break;
+                case 'x': {
+                    int value = 0;
+                    int digits = 0;
+                    while (i < text.length() && Character.digit(text.charAt(i), 16) != -1) {
+                        value = value * 16 + Character.digit(text.charAt(i++), 16);
+                        digits++;
+                    }
+                    if (digits == 0) {
+                        throw syntaxError("invalid hex escape");
+                    }
+                    sb.append((char) value);
+                    break;
+                }
+                default:
+                    if (c >= '0' && c <= '7') {
+                        int value = c - '0';
+                        for (int digits = 1; digits < 3 && i < text.length()
+                                && text.charAt(i) >= '0' && text.charAt(i) <= '7'; digits++) {
+                            value = value * 8 + (text.charAt(i++) - '0');
+                        }
+                        sb.append((char) value);
+                    } else {
+                        // \\, \", \' and \? stand for themselves
+                        sb.append(c);
+                    }
+            }
+        }
+        throw syntaxError("unterminated string");
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(name + ":" + lineNumber + ": " + message);
+    }
+
+    private static String stripLeading(String s) {
+        int i = 0;
+        while (i < s.length() && (s.charAt(i) == ' ' || s.charAt(i) == '\t')) {
+            i++;
+        }
+        return i == 0 ? s : s.substring(i);
+    }
+
+    private static String stripSpace(String s) {
+        return s.startsWith(" ") ? s.substring(1) : s;
+    }
+}
@@ -0,0 +1,364 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Writes {@link PoEntry} objects in the layout used by the gettext tools,
+ * including their line wrapping, so that files written by the plugin and by
+ * msgmerge or xgettext can be compared byte by byte.
+ */
+public class PoWriter implements Closeable {
+
+    /**
+     * The default page width of the gettext tools.
+     */
+    public static final int DEFAULT_WIDTH = 79;
+
+    private final Writer out;
+    private final int width;
+    private boolean first = true;
+
+    /**
+     * @param width the page width, or a value less than 1 to only break strings after newlines
+     */
+    public PoWriter(Writer out, int width) {
+        this.out = out;
+        this.width = width;
+    }
+
+    public PoWriter(OutputStream out, Charset charset, int width) {
+        this(new BufferedWriter(new OutputStreamWriter(out, charset), 65536), width);
+    }
+
+    public void write(PoEntry entry) throws IOException {
+        if (!first) {
+            out.write('\n');
+        }
+        first = false;
+
+        for (String comment : entry.getTranslatorComments()) {
+            writeComment("#", comment);
+        }
+        if (!entry.isObsolete()) {
+            // like msgattrib and msgmerge, obsolete messages keep only their translator comments
+            for (String comment : entry.getExtractedComments()) {
+                writeComment("#.", comment);
+            }
+            writeReferences(entry.getReferences());
+        }
+        writeFlags(entry);
+
+        String previousPrefix = entry.isObsolete() ? "#~| " : "#| ";
+        if (entry.getPreviousMsgctxt() != null) {
+            writeString(previousPrefix, "msgctxt", entry.getPreviousMsgctxt());
+        }
+        if (entry.getPreviousMsgid() != null) {
+            writeString(previousPrefix, "msgid", entry.getPreviousMsgid());
+        }
+        if (entry.getPreviousMsgidPlural() != null) {
+            writeString(previousPrefix, "msgid_plural", entry.getPreviousMsgidPlural());
+        }
+
+        String prefix = entry.isObsolete() ? "#~ " : "";
+        if (entry.getMsgctxt() != null) {
+            writeString(prefix, "msgctxt", entry.getMsgctxt());
+        }
+        writeString(prefix, "msgid", entry.getMsgid());
+        List<String> msgstr = entry.getMsgstr();
+        if (entry.getMsgidPlural() != null) {
+            writeString(prefix, "msgid_plural", entry.getMsgidPlural());
+            if (msgstr.isEmpty()) {
+                writeString(prefix, "msgstr[0]", "");
+            }
+            for (int i = 0; i < msgstr.size(); i++) {
+                writeString(prefix, "msgstr[" + i + "]", msgstr.get(i));
+            }
+        } else {
+            writeString(prefix, "msgstr", entry.getFirstMsgstr());
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeComment(String marker, String comment) throws IOException {
+        out.write(marker);
+        if (!comment.isEmpty()) {
+            out.write(' ');
+            out.write(comment);
+        }
+        out.write('\n');
+    }
+
+    private void writeReferences(List<String> references) throws IOException {
+        if (references.isEmpty()) {
+            return;
+        }
+        int pageWidth = width > 0 ? width : DEFAULT_WIDTH;
+        out.write("#:");
+        int column = 2;
+        for (String reference : references) {
+            int length = reference.length() + 1;
+            if (column > 2 && column + length > pageWidth) {
+                out.write("\n#:");
+                column = 2;
+            }
+            out.write(' ');
+            out.write(reference);
+            column += length;
+        }
+        out.write('\n');
+    }
+
+    private void writeFlags(PoEntry entry) throws IOException {
+        boolean fuzzy = entry.isFuzzy();
+        if (entry.isObsolete()) {
+            // only the fuzzy flag is kept for obsolete messages
+            if (fuzzy) {
+                out.write("#, " + PoEntry.FUZZY + "\n");
+            }
+            return;
+        }
+        if (entry.getFlags().isEmpty()) {
+            return;
+        }
+        out.write("#,");
+        if (fuzzy) {
+            out.write(" " + PoEntry.FUZZY);
+        }
+        boolean firstFlag = !fuzzy;
+        for (String flag : entry.getFlags()) {
+            if (PoEntry.FUZZY.equals(flag)) {
+                continue;
+            }
+            out.write(firstFlag ? " " : ", ");
+            out.write(flag);
+            firstFlag = false;
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes a keyword and its string value, breaking it into several lines
+     * the same way the gettext tools do: strings are split after each
+     * <code>\n</code>, lines are broken at word boundaries to fit the page
+     * width, and if the value does not fit on the first line it starts with
+     * an empty string.
+     */
+    private void writeString(String prefix, String keyword, String value) throws IOException {
+        // width available for string contents on continuation lines
+        int lineWidth = width > 0 ? width - 2 - prefix.length() : Integer.MAX_VALUE;
+        boolean firstLine = true;
+        int start = 0;
+        do {
+            int end = value.indexOf('\n', start);
+            end = end == -1 ? value.length() : end + 1;
+            String portion = escape(value, start, end);
+            boolean more = end < value.length();
+
+            int startColumn = firstLine ? keyword.length() + 1 : 0;
+            boolean[] breaks = width > 0 ? computeBreaks(portion, lineWidth, startColumn, end > start && value.charAt(end - 1) == '\n') : null;
+            if (firstLine && !portion.isEmpty()
+                    && (more || startColumn + width(portion) > lineWidth || hasBreak(breaks))) {
+                out.write(prefix);
+                out.write(keyword);
+                out.write(" \"\"\n");
+                firstLine = false;
+                breaks = width > 0 ? computeBreaks(portion, lineWidth, 0, end > start && value.charAt(end - 1) == '\n') : null;
+            }
+
+            out.write(prefix);
+            if (firstLine) {
+                out.write(keyword);
+                out.write(' ');
+            }
+            out.write('"');
+            for (int i = 0; i < portion.length(); i++) {
+                if (breaks != null && breaks[i]) {
+                    out.write("\"\n");
+                    out.write(prefix);
+                    out.write('"');
+                }
+                out.write(portion.charAt(i));
+            }
+            out.write("\"\n");
+
+            firstLine = false;
+            start = end;
+        } while (start < value.length());
+    }
+
+    private static boolean hasBreak(boolean[] breaks) {
+        if (breaks != null) {
+            for (boolean b : breaks) {
+                if (b) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses line breaks greedily: a line is broken at the last break
+     * opportunity before its contents would exceed <code>lineWidth</code>.
+     *
+     * @return for each char of <code>portion</code>, whether a line break is inserted before it
+     */
+    private static boolean[] computeBreaks(String portion, int lineWidth, int startColumn, boolean endsWithNewline) {
+        int length = portion.length();
+        boolean[] breaks = new boolean[length];
+        int lastBreak = -1;
+        int lastColumn = startColumn;
+        int pieceWidth = 0;
+        for (int i = 0; i < length; i++) {
+            boolean possible = isBreakOpportunity(portion, i)
+                    // don't break right before the trailing \n
+                    && !(endsWithNewline && i == length - 2);
+            if (possible) {
+                if (lastBreak != -1 && lastColumn + pieceWidth > lineWidth) {
+                    breaks[lastBreak] = true;
+                    lastColumn = 0;
+                }
+                lastBreak = i;
+                lastColumn += pieceWidth;
+                pieceWidth = 0;
+            }
+            pieceWidth += charWidth(portion.charAt(i));
+        }
+        if (lastBreak != -1 && lastColumn + pieceWidth > lineWidth) {
+            breaks[lastBreak] = true;
+        }
+        return breaks;
+    }
+
+    /**
+     * A simplified version of the Unicode line breaking rules that libunistring
+     * applies for the gettext tools.
+     */
+    private static boolean isBreakOpportunity(String s, int i) {
+        if (i == 0) {
+            return false;
+        }
+        char prev = s.charAt(i - 1);
+        char c = s.charAt(i);
+        if (prev == '\\' && !isEscaped(s, i - 1)) {
+            // never break inside an escape sequence
+            return false;
+        }
+        if (c == ' ' || Character.isLowSurrogate(c)) {
+            return false;
+        }
+        if (prev == ' ') {
+            return ")]}!?,.;:/".indexOf(c) == -1 && c != '\u3001' && c != '\u3002';
+        }
+        if (prev == '-' && i >= 2 && Character.isLetter(c) && Character.isLetterOrDigit(s.charAt(i - 2))) {
+            return true;
+        }
+        if (isIdeographic(c) || isIdeographic(prev)) {
+            return !isClosingPunctuation(c) && !isOpeningPunctuation(prev);
+        }
+        return false;
+    }
+
+    private static boolean isEscaped(String s, int i) {
+        int backslashes = 0;
+        while (i - 1 - backslashes >= 0 && s.charAt(i - 1 - backslashes) == '\\') {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static boolean isIdeographic(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return Character.isIdeographic(c)
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    private static boolean isClosingPunctuation(char c) {
+        return "\u3001\u3002\uff0c\uff0e\uff09\u300d\u300f\uff01\uff1f\u30fc\u3063\u30c3".indexOf(c) != -1
+                || Character.getType(c) == Character.END_PUNCTUATION;
+    }
+
+    private static boolean isOpeningPunctuation(char c) {
+        return Character.getType(c) == Character.START_PUNCTUATION;
+    }
+
+    static int width(String s) {
+        int width = 0;
+        for (int i = 0; i < s.length(); i++) {
+            width += charWidth(s.charAt(i));
+        }
+        return width;
+    }
+
+    private static int charWidth(char c) {
+        if (Character.isLowSurrogate(c)) {
+            return 0;
+        }
+        int type = Character.getType(c);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) {
+            return 0;
+        }
+        if ((c >= '\u1100' && c <= '\u115f') || (c >= '\u2e80' && c <= '\ua4cf' && c != '\u303f')
+                || (c >= '\uac00' && c <= '\ud7a3') || (c >= '\uf900' && c <= '\ufaff')
+                || (c >= '\ufe30' && c <= '\ufe4f') || (c >= '\uff00' && c <= '\uff60')
+                || (c >= '\uffe0' && c <= '\uffe6')) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Escapes a part of a string the way it is written between double quotes.
+     */
+    static String escape(String s, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start + 8);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\u0007': sb.append("\\a"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\u000b': sb.append("\\v"); break;
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
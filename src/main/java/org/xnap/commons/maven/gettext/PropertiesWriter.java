@@ -0,0 +1,207 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes {@link PoEntry} objects as Java properties in the layout of
+ * <code>msgcat --no-location -p</code>:
+ * <ul>
+ * <li>translator and extracted comments and the flags are kept as comments,</li>
+ * <li>the header, untranslated and fuzzy messages are commented out with <code>!</code>,</li>
+ * <li>obsolete messages and messages with plural forms are left out,</li>
+ * <li>non-ASCII characters are written as unicode escapes, unless UTF-8
+ * output is requested, which Java 9 and later read for property resource
+ * bundles.</li>
+ * </ul>
+ * msgcat rejects messages with a context. They are written with the key of
+ * the msgfmt bundles instead: the context, {@link PoEntry#CONTEXT_SEPARATOR}
+ * and the message id.
+ */
+class PropertiesWriter implements Closeable {
+
+    private static final Pattern CHARSET = Pattern.compile("(charset=)([^\\s;]+)");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean utf8;
+    private boolean first = true;
+
+    /**
+     * @param utf8 write non-ASCII characters in UTF-8 instead of escaping them
+     */
+    PropertiesWriter(OutputStream out, boolean utf8) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out,
+                utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1), 65536);
+        this.utf8 = utf8;
+    }
+
+    /**
+     * @return <code>false</code> if the entry cannot be represented as a property
+     */
+    boolean write(PoEntry entry) throws IOException {
+        if (entry.isObsolete()) {
+            return true;
+        }
+        if (entry.isPlural()) {
+            return false;
+        }
+        if (!first) {
+            out.write('\n');
+        }
+        first = false;
+
+        for (String comment : entry.getTranslatorComments()) {
+            writeComment("#", comment);
+        }
+        for (String comment : entry.getExtractedComments()) {
+            writeComment("#.", comment);
+        }
+        writeFlags(entry);
+
+        String msgstr = entry.getFirstMsgstr();
+        if (entry.isHeader()) {
+            msgstr = convertCharset(msgstr);
+        }
+        if (entry.isHeader() || msgstr.isEmpty() || entry.isFuzzy()) {
+            out.write('!');
+        }
+        writeEscaped(entry.getKey(), true);
+        out.write('=');
+        writeEscaped(msgstr, false);
+        out.write('\n');
+        return true;
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * msgcat converts the catalog to UTF-8 and updates the charset of the
+     * header unless it already is UTF-8 or the <code>CHARSET</code> placeholder.
+     */
+    private static String convertCharset(String header) {
+        Matcher matcher = CHARSET.matcher(header);
+        if (matcher.find() && !"UTF-8".equalsIgnoreCase(matcher.group(2)) && !"CHARSET".equals(matcher.group(2))) {
+            return header.substring(0, matcher.start(2)) + "UTF-8" + header.substring(matcher.end(2));
+        }
+        return header;
+    }
+
+    private void writeComment(String marker, String comment) throws IOException {
+        out.write(marker);
+        if (!comment.isEmpty()) {
+            out.write(' ');
+            for (int i = 0; i < comment.length(); i++) {
+                char c = comment.charAt(i);
+                if (c < 0x80 || utf8 && !Character.isSurrogate(c)) {
+                    out.write(c);
+                } else {
+                    writeUnicodeEscape(c);
+                }
+            }
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes the flags like msgcat, which drops the fuzzy flag of
+     * untranslated messages.
+     */
+    private void writeFlags(PoEntry entry) throws IOException {
+        boolean fuzzy = entry.isFuzzy() && entry.isTranslated();
+        StringBuilder flags = new StringBuilder();
+        if (fuzzy) {
+            flags.append(' ').append(PoEntry.FUZZY);
+        }
+        for (String flag : entry.getFlags()) {
+            if (!PoEntry.FUZZY.equals(flag)) {
+                flags.append(flags.length() == 0 ? " " : ", ").append(flag);
+            }
+        }
+        if (flags.length() > 0) {
+            out.write("#,");
+            out.write(flags.toString());
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Escapes a key or value. Spaces are escaped everywhere in keys, but
+     * only at the start of values.
+     */
+    private void writeEscaped(String s, boolean key) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case ' ':
+                    out.write(key || i == 0 ? "\\ " : " ");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\f':
+                    out.write("\\f");
+                    break;
+                case '\\':
+                case '#':
+                case '!':
+                case '=':
+                case ':':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                default:
+                    if (c >= 0x20 && c < 0x7f) {
+                        out.write(c);
+                    } else if (utf8 && c >= 0xa0 && !Character.isSurrogate(c)) {
+                        out.write(c);
+                    } else if (utf8 && Character.isHighSurrogate(c) && i + 1 < s.length()
+                            && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        out.write(c);
+                        out.write(s.charAt(++i));
+                    } else {
+                        writeUnicodeEscape(c);
+                    }
+            }
+        }
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        out.write("\\u");
+        out.write(HEX_DIGITS[(c >> 12) & 0xf]);
+        out.write(HEX_DIGITS[(c >> 8) & 0xf]);
+        out.write(HEX_DIGITS[(c >> 4) & 0xf]);
+        out.write(HEX_DIGITS[c & 0xf]);
+    }
+}
@@ -16,25 +16,20 @@ package org.xnap.commons.maven.gettext;
  * limitations under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -45,20 +40,14 @@ import org.codehaus.doxia.module.xhtml.XhtmlSink;
 import org.codehaus.doxia.sink.Sink;
 import org.codehaus.doxia.site.renderer.SiteRenderer;
 import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.WriterStreamConsumer;
 
 /**
  * Goal that generates a report.
  *
  * @author Steffen Pingel
  */
-@Mojo(name = "report", defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name = "report", defaultPhase = LifecyclePhase.PROCESS_SOURCES, threadSafe = true)
 public class ReportMojo extends AbstractMojo {
-    private static final Pattern TRANSLATOR_PATTERN = Pattern.compile("\"Last-Translator: (?<name>.*)\"", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
     /**
      * Specifies the directory where the report will be generated.
      */
@@ -76,16 +65,36 @@ public class ReportMojo extends AbstractMojo {
 
     /**
      * The msgfmt command.
+     *
+     * @deprecated the statistics are computed without running msgfmt
      */
+    @Deprecated
     @Parameter(property = "msgfmtCmd", defaultValue = "msgfmt", required = true)
     protected String msgfmtCmd;
 
+    /**
+     * Number of po files to process in parallel. Defaults to the number of
+     * available processors.
+     */
+    @Parameter(property = "threads", defaultValue = "0")
+    protected int threads;
+
     @Parameter(property = "includes")
     protected String[] includes;
 
     @Parameter(property = "excludes")
     protected String[] excludes;
 
+    /**
+     * Directory for the JSON reports of the wall time, subprocesses and bytes
+     * read and written of every goal execution and every file it processes.
+     */
+    @Parameter(property = "metricsDirectory", defaultValue = "${project.build.directory}/gettext-metrics")
+    protected File metricsDirectory;
+
+    @Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
+    protected String executionId;
+
     protected PrintStream out;
 
     public void execute() throws MojoExecutionException {
@@ -101,7 +110,7 @@ public class ReportMojo extends AbstractMojo {
         }
     }
 
-    protected void executeReport() throws MavenReportException {
+    protected void executeReport() throws MavenReportException, MojoExecutionException {
         Stats stats = gatherStats();
         createReport(stats);
     }
@@ -141,7 +150,7 @@ public class ReportMojo extends AbstractMojo {
         return project;
     }
 
-    public Stats gatherStats() {
+    public Stats gatherStats() throws MojoExecutionException {
         getLog().info("Gathering statistics for po files in '"
                 + poDirectory.getAbsolutePath() + "'.");
 
@@ -157,60 +166,69 @@ public class ReportMojo extends AbstractMojo {
         }
         ds.scan();
 
-        Stats stats = new Stats();
-
-        String[] files = ds.getIncludedFiles();
+        final String[] files = ds.getIncludedFiles();
+        final StatsEntry[] entries = new StatsEntry[files.length];
+        BuildMetrics metrics = new BuildMetrics("report");
+        List<TaskExecutor.Task> tasks = new ArrayList<>(files.length);
         for (int i = 0; i < files.length; i++) {
-            File file = new File(poDirectory, files[i]);
-            getLog().info("Processing " + file.getAbsolutePath());
-
-            Commandline cl = new Commandline();
-            // make sure the output is in english
-            cl.addEnvironment("LC_ALL", "C");
-            cl.setExecutable(msgfmtCmd);
-            cl.createArg().setValue("--statistics");
-            cl.createArg().setValue(file.getAbsolutePath());
-
-            Writer out = new StringWriter();
-            Writer err = new StringWriter();
-            try {
-                int ret = CommandLineUtils.executeCommandLine(cl,
-                        new WriterStreamConsumer(out),
-                        new WriterStreamConsumer(err));
-                if (ret == 0) {
-                    // for whatever reason the output is written to stderr
-                    StatsEntry entry = stats.parseOutput(file, err.toString());
-                    entry.setTranslator(getTranslator(file));
-                } else {
-                    getLog().info(err.toString());
-                }
-            } catch (CommandLineException e) {
-                getLog().error("Could not execute msgfmt: " + err.toString(), e);
-            }
+            final int index = i;
+            tasks.add(metrics.task(files[i],
+                    (log, fileMetrics) -> entries[index] = count(new File(poDirectory, files[index]), log, fileMetrics)));
+        }
+        try {
+            TaskExecutor.execute(tasks, threads, getLog());
+        } finally {
+            metrics.write(metricsDirectory, executionId, getLog());
         }
 
+        Stats stats = new Stats();
+        for (StatsEntry entry : entries) {
+            if (entry != null) {
+                stats.getItems().add(entry);
+            }
+        }
         return stats;
     }
 
-    private String getTranslator(File file) {
-        try (BufferedReader rdr = new BufferedReader(new FileReader(file))) {
-            String line = null;
-            boolean headerFound = false;
-            while ((line = rdr.readLine()) != null) {
-                if ((line.isEmpty() || line.startsWith("msgid")) && headerFound) { // only search the header
-                    return null;
-                } else if (line.startsWith("msgid") && !headerFound) {
-                    headerFound = true;
+    /**
+     * Counts the messages of a po file the way <code>msgfmt --statistics</code>
+     * does and reads the <code>Last-Translator</code> header field, in a single
+     * pass.
+     *
+     * @return the statistics or <code>null</code> if the file could not be read
+     */
+    private StatsEntry count(File file, Log log, BuildMetrics.Record fileMetrics) {
+        log.info("Processing " + file.getAbsolutePath());
+        fileMetrics.read(file);
+        StatsEntry stats = new StatsEntry(file);
+        try (FileLocks.Lock lock = FileLocks.read(file); PoReader reader = new PoReader(file)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (entry.isObsolete()) {
+                    continue;
                 }
-                Matcher m = TRANSLATOR_PATTERN.matcher(line);
-                if (m.matches()) {
-                    return m.group("name").trim().replaceAll("\\\\n", "");
+                if (entry.isHeader()) {
+                    stats.setTranslator(entry.getHeaderField("Last-Translator"));
+                    // like msgfmt, only a translated header that is not fuzzy is left out
+                    if (!entry.isTranslated()) {
+                        stats.setUntranslated(stats.getUntranslated() + 1);
+                    } else if (entry.isFuzzy()) {
+                        stats.setFuzzy(stats.getFuzzy() + 1);
+                    }
+                } else if (!entry.isTranslated()) {
+                    stats.setUntranslated(stats.getUntranslated() + 1);
+                } else if (entry.isFuzzy()) {
+                    stats.setFuzzy(stats.getFuzzy() + 1);
+                } else {
+                    stats.setTranslated(stats.getTranslated() + 1);
                 }
             }
         } catch (IOException e) {
-            // Ignore, just return null
+            log.error("Could not read " + file + ": " + e.getMessage());
+            fileMetrics.setStatus(BuildMetrics.FAILED);
+            return null;
         }
-        return null;
+        return stats;
     }
 
     public static Locale getLocale(File file) {
@@ -228,51 +246,6 @@ public class ReportMojo extends AbstractMojo {
 
         private List<StatsEntry> items = new ArrayList<>();
 
-        /**
-         * <code>
-         * 117 translated messages.
-         * 0 translated messages, 117 untranslated messages.
-         * 92 translated messages, 5 fuzzy translations, 20 untranslated messages.
-         * </code>
-         *
-         * @param line output of msgfmt command
-         */
-        public StatsEntry parseOutput(File file, String line) {
-            StatsEntry entry = new StatsEntry(file);
-            items.add(entry);
-
-            StringTokenizer t = new StringTokenizer(line, ",");
-            while (t.hasMoreTokens()) {
-                String token = t.nextToken().trim();
-
-                // remove trailing "."
-                if (token.endsWith(".")) {
-                    token = token.substring(0, token.length() - 1);
-                }
-
-                if (token.endsWith("untranslated messages")) {
-                    entry.setUntranslated(extractNumber(token));
-                } else if (token.endsWith("translated messages")) {
-                    entry.setTranslated(extractNumber(token));
-                } else if (token.endsWith("fuzzy translations")) {
-                    entry.setFuzzy(extractNumber(token));
-                }
-            }
-            return entry;
-        }
-
-        private int extractNumber(String token) {
-            StringTokenizer t = new StringTokenizer(token, " ");
-            if (t.hasMoreTokens()) {
-                try {
-                    return Integer.parseInt(t.nextToken());
-                } catch (NumberFormatException e) {
-                }
-            }
-            getLog().warn("Could not parse token: " + token);
-            return 0;
-        }
-
         public List<StatsEntry> getItems() {
             return items;
         }
@@ -0,0 +1,528 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the byte code of a resource bundle class for a catalog, without
+ * going through msgfmt and javac.
+ * <p>
+ * The class has the same layout and lookup semantics as the one generated by
+ * <code>msgfmt --java2</code>:
+ * <ul>
+ * <li>the keys are the message ids, prefixed by the context and
+ * {@link PoEntry#CONTEXT_SEPARATOR} for messages with a context,</li>
+ * <li>messages with plural forms map to a <code>String[]</code> and the class
+ * has a static <code>pluralEval(long)</code> method,</li>
+ * <li>keys and values are stored in an open addressing hash table of
+ * <code>String.hashCode()</code> values with double hashing,</li>
+ * <li><code>handleGetObject</code> and <code>getParent</code> are public, so
+ * that <code>GettextResource</code> can call them.</li>
+ * </ul>
+ * With more than one shard, see {@link #setShards(int)}, the table is split
+ * by key hash into shard classes of their own, and the bundle class only
+ * dispatches lookups to them. A shard class is loaded and its strings are
+ * created the first time a key of the shard is looked up.
+ */
+class ResourceBundleClassGenerator {
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String RESOURCE_BUNDLE = "java/util/ResourceBundle";
+    private static final String TABLE_DESCRIPTOR = "[Ljava/lang/Object;";
+    private static final String SHARD_GET_DESCRIPTOR = "(Ljava/lang/String;)Ljava/lang/Object;";
+    private static final String SHARD_ADD_KEYS_DESCRIPTOR = "(Ljava/util/ArrayList;)V";
+
+    /**
+     * Code size of a table initialization method after which a new method is started.
+     */
+    private static final int FILL_METHOD_LIMIT = 60000;
+
+    /**
+     * Constant pool entries a class may use for its keys and translations,
+     * leaving room for the references of its methods.
+     */
+    private static final int CONSTANTS_PER_CLASS = 60000;
+
+    private final String className;
+    private final MessageKeys messageKeys;
+    private final MessageKeys.Messages messages;
+    private PoEntry header;
+    private boolean hasPlurals;
+    private int shards = 1;
+
+    /**
+     * @param className the binary name of the class, e.g. <code>org.example.Messages_de</code>
+     */
+    ResourceBundleClassGenerator(String className) {
+        this(className, new MessageKeys());
+    }
+
+    /**
+     * @param className   the binary name of the class, e.g. <code>org.example.Messages_de</code>
+     * @param messageKeys stores the keys, shared by the generators of all locales
+     */
+    ResourceBundleClassGenerator(String className, MessageKeys messageKeys) {
+        this.className = className;
+        this.messageKeys = messageKeys;
+        this.messages = new MessageKeys.Messages(messageKeys);
+    }
+
+    /**
+     * Adds all messages of a catalog that msgfmt would include.
+     */
+    void addAll(File poFile) throws IOException {
+        try (PoReader reader = new PoReader(poFile, messageKeys)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                addEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds all messages of a catalog that has already been read.
+     */
+    void addAll(List<PoEntry> entries) {
+        for (PoEntry entry : entries) {
+            addEntry(entry);
+        }
+    }
+
+    private void addEntry(PoEntry entry) {
+        if (entry.isHeader()) {
+            header = entry;
+        }
+        if (entry.isCompiled()) {
+            add(entry);
+        }
+    }
+
+    void add(PoEntry entry) {
+        // msgfmt rejects duplicates, the first definition wins here
+        if (messages.add(entry)) {
+            hasPlurals |= entry.isPlural();
+        }
+    }
+
+    /**
+     * Splits the messages into <code>shards</code> classes, which
+     * {@link #generateShard(int)} generates. The default of one shard keeps
+     * all messages in the bundle class itself.
+     */
+    void setShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("The number of shards must be positive: " + shards);
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * Estimates the number of shards the messages need, so that no class
+     * exceeds the 65535 entries of the constant pool. Every key and
+     * translation takes two constants, and the shards are filled only
+     * about evenly.
+     */
+    int getRequiredShards() {
+        long constants = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            constants += 2 + 2 * (messages.isPlural(i) ? ((String[]) messages.getValue(i)).length : 1);
+        }
+        return (int) Math.max(1, (constants * 5 / 4 + CONSTANTS_PER_CLASS - 1) / CONSTANTS_PER_CLASS);
+    }
+
+    /**
+     * @return the binary name of a shard class of the bundle class <code>className</code>
+     */
+    static String getShardClassName(String className, int shard) {
+        return className + "$Shard" + shard;
+    }
+
+    /**
+     * Generates the bundle class.
+     */
+    byte[] generate() {
+        ClassFileWriter cw = new ClassFileWriter(className.replace('.', '/'), RESOURCE_BUNDLE);
+        int size = 0;
+        int table = 0;
+        if (shards == 1) {
+            int[] messageIndexes = getShardMessages(0);
+            size = getTableSize(messageIndexes.length);
+            table = cw.fieldRef(cw.getClassName(), "table", TABLE_DESCRIPTOR);
+            cw.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL,
+                    "table", TABLE_DESCRIPTOR);
+            addTableInitializer(cw, table, size, messageIndexes);
+        }
+
+        ClassFileWriter.Code init = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1);
+        init.local(ClassFileWriter.ALOAD, 0);
+        init.op(ClassFileWriter.INVOKESPECIAL, cw.methodRef(RESOURCE_BUNDLE, "<init>", "()V"));
+        init.op(ClassFileWriter.RETURN);
+
+        if (shards == 1) {
+            addHandleGetObject(cw, table, size);
+            addGetKeys(cw, table, size);
+        } else {
+            addShardedHandleGetObject(cw);
+            addShardedGetKeys(cw);
+        }
+
+        ClassFileWriter.Code getParent = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "getParent",
+                "()Ljava/util/ResourceBundle;", 1, 1);
+        getParent.local(ClassFileWriter.ALOAD, 0);
+        getParent.op(ClassFileWriter.GETFIELD, cw.fieldRef(RESOURCE_BUNDLE, "parent", "Ljava/util/ResourceBundle;"));
+        getParent.op(ClassFileWriter.ARETURN);
+
+        if (hasPlurals) {
+            // the expression is only parsed when it is used, like msgfmt does
+            addPluralEval(cw, PluralExpression.fromHeader(header));
+        }
+
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates a shard class, named {@link #getShardClassName(String, int)},
+     * with the messages whose key hash modulo the number of shards is
+     * <code>shard</code>. It has the table of the messages and two static
+     * methods for the bundle class: <code>get(String)</code>, which looks up
+     * a key like <code>handleGetObject</code>, and
+     * <code>addKeys(ArrayList)</code>.
+     */
+    byte[] generateShard(int shard) {
+        ClassFileWriter cw = new ClassFileWriter(getShardClassName(className, shard).replace('.', '/'), OBJECT);
+        int[] messageIndexes = getShardMessages(shard);
+        int size = getTableSize(messageIndexes.length);
+        int table = cw.fieldRef(cw.getClassName(), "table", TABLE_DESCRIPTOR);
+        cw.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL,
+                "table", TABLE_DESCRIPTOR);
+        addTableInitializer(cw, table, size, messageIndexes);
+        addLookup(cw.addMethod(ClassFileWriter.ACC_STATIC, "get", SHARD_GET_DESCRIPTOR, 3, 5), cw, table, size, 0);
+        ClassFileWriter.Code addKeys = cw.addMethod(ClassFileWriter.ACC_STATIC, "addKeys", SHARD_ADD_KEYS_DESCRIPTOR,
+                3, 3);
+        addKeys(addKeys, cw, table, size, 0);
+        addKeys.op(ClassFileWriter.RETURN);
+        return cw.toByteArray();
+    }
+
+    /**
+     * @return the indexes of the messages of a shard, in the order they were added
+     */
+    private int[] getShardMessages(int shard) {
+        int[] indexes = new int[messages.size()];
+        int count = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (shards == 1 || getShard(messages.getKey(i)) == shard) {
+                indexes[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    private int getShard(String key) {
+        return (key.hashCode() & 0x7fffffff) % shards;
+    }
+
+    /**
+     * @return the slot of every message in a table of <code>size</code> slots
+     */
+    private int[] getSlots(int[] messageIndexes, int size) {
+        int[] slots = new int[messageIndexes.length];
+        boolean[] used = new boolean[size];
+        for (int i = 0; i < messageIndexes.length; i++) {
+            int hash = messages.getKey(messageIndexes[i]).hashCode() & 0x7fffffff;
+            int index = hash % size;
+            int increment = hash % (size - 2) + 1;
+            while (used[index]) {
+                index += increment;
+                if (index >= size) {
+                    index -= size;
+                }
+            }
+            used[index] = true;
+            slots[i] = index;
+        }
+        return slots;
+    }
+
+    /**
+     * Adds the static <code>pluralEval(long)</code> method that msgfmt
+     * generates for catalogs with plural forms.
+     *
+     * @param expression the plural expression of the catalog
+     */
+    static void addPluralEval(ClassFileWriter cw, PluralExpression expression) {
+        ClassFileWriter.Code pluralEval = cw.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                "pluralEval", "(J)J", expression.getMaxStack(), 2);
+        expression.compile(pluralEval);
+        pluralEval.op(ClassFileWriter.LRETURN);
+    }
+
+    /**
+     * Returns a prime table size with room to spare, so that lookups of
+     * missing keys terminate quickly. The probe increment is always smaller
+     * than a prime size, so every slot is reachable.
+     */
+    static int getTableSize(int count) {
+        int size = Math.max(5, count + count / 3 + 1);
+        while (!isPrime(size)) {
+            size++;
+        }
+        return size;
+    }
+
+    private static boolean isPrime(int n) {
+        if (n % 2 == 0) {
+            return n == 2;
+        }
+        for (int i = 3; (long) i * i <= n; i += 2) {
+            if (n % i == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Emits <code>&lt;clinit&gt;</code>, which fills the table through as
+     * many helper methods as needed to stay below the code size limit.
+     */
+    private void addTableInitializer(ClassFileWriter cw, int table, int size, int[] messageIndexes) {
+        String owner = cw.getClassName();
+        int[] slots = getSlots(messageIndexes, size);
+        List<String> fillMethods = new ArrayList<>();
+        ClassFileWriter.Code fill = null;
+        for (int i = 0; i < messageIndexes.length; i++) {
+            if (fill == null || fill.size() > FILL_METHOD_LIMIT) {
+                String name = "fill" + fillMethods.size();
+                if (fill != null) {
+                    fill.op(ClassFileWriter.RETURN);
+                }
+                fill = cw.addMethod(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC, name,
+                        "(" + TABLE_DESCRIPTOR + ")V", 8, 1);
+                fillMethods.add(name);
+            }
+            fill.local(ClassFileWriter.ALOAD, 0).pushInt(2 * slots[i]).pushString(messages.getKey(messageIndexes[i]))
+                    .op(ClassFileWriter.AASTORE);
+            fill.local(ClassFileWriter.ALOAD, 0).pushInt(2 * slots[i] + 1);
+            Object value = messages.getValue(messageIndexes[i]);
+            if (value instanceof String[]) {
+                String[] forms = (String[]) value;
+                fill.pushInt(forms.length).op(ClassFileWriter.ANEWARRAY, cw.classRef(STRING));
+                for (int j = 0; j < forms.length; j++) {
+                    fill.op(ClassFileWriter.DUP).pushInt(j).pushString(forms[j]).op(ClassFileWriter.AASTORE);
+                }
+            } else {
+                fill.pushString((String) value);
+            }
+            fill.op(ClassFileWriter.AASTORE);
+        }
+        if (fill != null) {
+            fill.op(ClassFileWriter.RETURN);
+        }
+
+        ClassFileWriter.Code clinit = cw.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V", 2, 0);
+        clinit.pushInt(2 * size).op(ClassFileWriter.ANEWARRAY, cw.classRef(OBJECT));
+        for (String name : fillMethods) {
+            clinit.op(ClassFileWriter.DUP);
+            clinit.op(ClassFileWriter.INVOKESTATIC, cw.methodRef(owner, name, "(" + TABLE_DESCRIPTOR + ")V"));
+        }
+        clinit.op(ClassFileWriter.PUTSTATIC, table);
+        clinit.op(ClassFileWriter.RETURN);
+    }
+
+    /**
+     * <pre>
+     * public Object handleGetObject(String msgid) {
+     *     int hash = msgid.hashCode() &amp; 0x7fffffff;
+     *     int idx = (hash % size) &lt;&lt; 1;
+     *     int incr = ((hash % (size - 2)) + 1) &lt;&lt; 1;
+     *     for (;;) {
+     *         Object found = table[idx];
+     *         if (found == null) return null;
+     *         if (msgid.equals(found)) return table[idx + 1];
+     *         idx += incr;
+     *         if (idx &gt;= 2 * size) idx -= 2 * size;
+     *     }
+     * }
+     * </pre>
+     */
+    private static void addHandleGetObject(ClassFileWriter cw, int table, int size) {
+        ClassFileWriter.Code code = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "handleGetObject",
+                "(Ljava/lang/String;)Ljava/lang/Object;", 3, 6);
+        addLookup(code, cw, table, size, 1);
+    }
+
+    /**
+     * Emits the body of <code>handleGetObject</code> for the key in local
+     * variable <code>key</code>, using the four variables after it.
+     */
+    private static void addLookup(ClassFileWriter.Code code, ClassFileWriter cw, int table, int size, int key) {
+        int hash = key + 1;
+        int idx = key + 2;
+        int incr = key + 3;
+        int candidate = key + 4;
+        code.local(ClassFileWriter.ALOAD, key).op(ClassFileWriter.INVOKEVIRTUAL, cw.methodRef(STRING, "hashCode", "()I"));
+        code.pushInt(0x7fffffff).op(ClassFileWriter.IAND).local(ClassFileWriter.ISTORE, hash);
+        code.local(ClassFileWriter.ILOAD, hash).pushInt(size).op(ClassFileWriter.IREM)
+                .op(ClassFileWriter.ICONST_1).op(ClassFileWriter.ISHL).local(ClassFileWriter.ISTORE, idx);
+        code.local(ClassFileWriter.ILOAD, hash).pushInt(size - 2).op(ClassFileWriter.IREM)
+                .op(ClassFileWriter.ICONST_1).op(ClassFileWriter.IADD)
+                .op(ClassFileWriter.ICONST_1).op(ClassFileWriter.ISHL).local(ClassFileWriter.ISTORE, incr);
+
+        ClassFileWriter.Label loop = new ClassFileWriter.Label();
+        ClassFileWriter.Label found = new ClassFileWriter.Label();
+        ClassFileWriter.Label next = new ClassFileWriter.Label();
+        code.mark(loop);
+        code.op(ClassFileWriter.GETSTATIC, table).local(ClassFileWriter.ILOAD, idx).op(ClassFileWriter.AALOAD)
+                .local(ClassFileWriter.ASTORE, candidate);
+        code.local(ClassFileWriter.ALOAD, candidate).jump(ClassFileWriter.IFNONNULL, found);
+        code.op(ClassFileWriter.ACONST_NULL).op(ClassFileWriter.ARETURN);
+        code.mark(found);
+        code.local(ClassFileWriter.ALOAD, key).local(ClassFileWriter.ALOAD, candidate)
+                .op(ClassFileWriter.INVOKEVIRTUAL, cw.methodRef(STRING, "equals", "(Ljava/lang/Object;)Z"))
+                .jump(ClassFileWriter.IFEQ, next);
+        code.op(ClassFileWriter.GETSTATIC, table).local(ClassFileWriter.ILOAD, idx).op(ClassFileWriter.ICONST_1)
+                .op(ClassFileWriter.IADD).op(ClassFileWriter.AALOAD).op(ClassFileWriter.ARETURN);
+        code.mark(next);
+        code.local(ClassFileWriter.ILOAD, idx).local(ClassFileWriter.ILOAD, incr).op(ClassFileWriter.IADD)
+                .local(ClassFileWriter.ISTORE, idx);
+        code.local(ClassFileWriter.ILOAD, idx).pushInt(2 * size).jump(ClassFileWriter.IF_ICMPLT, loop);
+        code.local(ClassFileWriter.ILOAD, idx).pushInt(2 * size).op(ClassFileWriter.ISUB)
+                .local(ClassFileWriter.ISTORE, idx);
+        code.jump(ClassFileWriter.GOTO, loop);
+    }
+
+    /**
+     * <pre>
+     * public Object handleGetObject(String msgid) {
+     *     switch ((msgid.hashCode() &amp; 0x7fffffff) % shards) {
+     *     case 0: return Messages_de$Shard0.get(msgid);
+     *     case 1: return Messages_de$Shard1.get(msgid);
+     *     ...
+     *     }
+     * }
+     * </pre>
+     */
+    private void addShardedHandleGetObject(ClassFileWriter cw) {
+        ClassFileWriter.Code code = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "handleGetObject",
+                "(Ljava/lang/String;)Ljava/lang/Object;", 2, 2);
+        code.local(ClassFileWriter.ALOAD, 1).op(ClassFileWriter.INVOKEVIRTUAL, cw.methodRef(STRING, "hashCode", "()I"));
+        code.pushInt(0x7fffffff).op(ClassFileWriter.IAND).pushInt(shards).op(ClassFileWriter.IREM);
+        ClassFileWriter.Label[] targets = new ClassFileWriter.Label[shards];
+        for (int i = 0; i < shards; i++) {
+            targets[i] = new ClassFileWriter.Label();
+        }
+        ClassFileWriter.Label missing = new ClassFileWriter.Label();
+        code.tableSwitch(missing, targets);
+        for (int i = 0; i < shards; i++) {
+            String shard = getShardClassName(className, i).replace('.', '/');
+            code.mark(targets[i]);
+            code.local(ClassFileWriter.ALOAD, 1).op(ClassFileWriter.INVOKESTATIC,
+                    cw.methodRef(shard, "get", SHARD_GET_DESCRIPTOR));
+            code.op(ClassFileWriter.ARETURN);
+        }
+        code.mark(missing);
+        code.op(ClassFileWriter.ACONST_NULL).op(ClassFileWriter.ARETURN);
+    }
+
+    /**
+     * <pre>
+     * public Enumeration getKeys() {
+     *     ArrayList keys = new ArrayList();
+     *     for (int idx = 0; idx &lt; 2 * size; idx += 2) {
+     *         Object key = table[idx];
+     *         if (key != null) keys.add(key);
+     *     }
+     *     return Collections.enumeration(keys);
+     * }
+     * </pre>
+     */
+    private static void addGetKeys(ClassFileWriter cw, int table, int size) {
+        String list = "java/util/ArrayList";
+        ClassFileWriter.Code code = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "getKeys",
+                "()Ljava/util/Enumeration;", 3, 4);
+        code.op(ClassFileWriter.NEW, cw.classRef(list)).op(ClassFileWriter.DUP)
+                .op(ClassFileWriter.INVOKESPECIAL, cw.methodRef(list, "<init>", "()V"))
+                .local(ClassFileWriter.ASTORE, 1);
+        addKeys(code, cw, table, size, 1);
+        code.local(ClassFileWriter.ALOAD, 1).op(ClassFileWriter.INVOKESTATIC,
+                cw.methodRef("java/util/Collections", "enumeration", "(Ljava/util/Collection;)Ljava/util/Enumeration;"));
+        code.op(ClassFileWriter.ARETURN);
+    }
+
+    /**
+     * Emits the loop of <code>getKeys</code>, which adds the keys of the
+     * table to the list in local variable <code>keys</code>, using the two
+     * variables after it.
+     */
+    private static void addKeys(ClassFileWriter.Code code, ClassFileWriter cw, int table, int size, int keys) {
+        String list = "java/util/ArrayList";
+        int idx = keys + 1;
+        int key = keys + 2;
+        code.op(ClassFileWriter.ICONST_0).local(ClassFileWriter.ISTORE, idx);
+
+        ClassFileWriter.Label loop = new ClassFileWriter.Label();
+        ClassFileWriter.Label next = new ClassFileWriter.Label();
+        ClassFileWriter.Label end = new ClassFileWriter.Label();
+        code.mark(loop);
+        code.local(ClassFileWriter.ILOAD, idx).pushInt(2 * size).jump(ClassFileWriter.IF_ICMPGE, end);
+        code.op(ClassFileWriter.GETSTATIC, table).local(ClassFileWriter.ILOAD, idx).op(ClassFileWriter.AALOAD)
+                .local(ClassFileWriter.ASTORE, key);
+        code.local(ClassFileWriter.ALOAD, key).jump(ClassFileWriter.IFNULL, next);
+        code.local(ClassFileWriter.ALOAD, keys).local(ClassFileWriter.ALOAD, key)
+                .op(ClassFileWriter.INVOKEVIRTUAL, cw.methodRef(list, "add", "(Ljava/lang/Object;)Z"))
+                .op(ClassFileWriter.POP);
+        code.mark(next);
+        code.iinc(idx, 2).jump(ClassFileWriter.GOTO, loop);
+        code.mark(end);
+    }
+
+    /**
+     * <pre>
+     * public Enumeration getKeys() {
+     *     ArrayList keys = new ArrayList();
+     *     Messages_de$Shard0.addKeys(keys);
+     *     Messages_de$Shard1.addKeys(keys);
+     *     ...
+     *     return Collections.enumeration(keys);
+     * }
+     * </pre>
+     * This loads all shards.
+     */
+    private void addShardedGetKeys(ClassFileWriter cw) {
+        String list = "java/util/ArrayList";
+        ClassFileWriter.Code code = cw.addMethod(ClassFileWriter.ACC_PUBLIC, "getKeys",
+                "()Ljava/util/Enumeration;", 2, 2);
+        code.op(ClassFileWriter.NEW, cw.classRef(list)).op(ClassFileWriter.DUP)
+                .op(ClassFileWriter.INVOKESPECIAL, cw.methodRef(list, "<init>", "()V"))
+                .local(ClassFileWriter.ASTORE, 1);
+        for (int i = 0; i < shards; i++) {
+            String shard = getShardClassName(className, i).replace('.', '/');
+            code.local(ClassFileWriter.ALOAD, 1).op(ClassFileWriter.INVOKESTATIC,
+                    cw.methodRef(shard, "addKeys", SHARD_ADD_KEYS_DESCRIPTOR));
+        }
+        code.local(ClassFileWriter.ALOAD, 1).op(ClassFileWriter.INVOKESTATIC,
+                cw.methodRef("java/util/Collections", "enumeration", "(Ljava/util/Collection;)Ljava/util/Enumeration;"));
+        code.op(ClassFileWriter.ARETURN);
+    }
+}
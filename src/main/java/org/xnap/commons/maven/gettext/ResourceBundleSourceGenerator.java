@@ -0,0 +1,427 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the Java source of a resource bundle class for a catalog,
+ * without going through msgfmt.
+ * <p>
+ * The class has the same keys, values and public methods as the one
+ * generated by <code>msgfmt --java2 --source</code>, but looks messages up
+ * in a minimal perfect hash table computed at build time: a lookup hashes
+ * the key once, reads one displacement and compares with the single key
+ * that can match.
+ * <p>
+ * The table uses hash and displace: the keys are distributed to buckets,
+ * and every bucket gets a displacement that moves all of its keys to free
+ * slots. Keys with the same <code>String.hashCode()</code> as another key
+ * cannot be told apart by the hash, they are stored after the table and
+ * searched linearly when the slot does not match.
+ */
+class ResourceBundleSourceGenerator {
+
+    /**
+     * Number of characters per string literal, which keeps the literals
+     * below the limit of 65535 bytes in the class file.
+     */
+    private static final int LITERAL_LENGTH = 8000;
+
+    private static final int MAX_ATTEMPTS = 10000;
+
+    private final String className;
+    private final MessageKeys messageKeys;
+    private final MessageKeys.Messages messages;
+    private PoEntry header;
+    private boolean hasPlurals;
+
+    /**
+     * @param className the binary name of the class, e.g. <code>org.example.Messages_de</code>
+     */
+    ResourceBundleSourceGenerator(String className) {
+        this(className, new MessageKeys());
+    }
+
+    /**
+     * @param className   the binary name of the class, e.g. <code>org.example.Messages_de</code>
+     * @param messageKeys stores the keys, shared by the generators of all locales
+     */
+    ResourceBundleSourceGenerator(String className, MessageKeys messageKeys) {
+        this.className = className;
+        this.messageKeys = messageKeys;
+        this.messages = new MessageKeys.Messages(messageKeys);
+    }
+
+    /**
+     * Adds all messages of a catalog that msgfmt would include.
+     */
+    void addAll(File poFile) throws IOException {
+        try (PoReader reader = new PoReader(poFile, messageKeys)) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                addEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds all messages of a catalog that has already been read.
+     */
+    void addAll(List<PoEntry> entries) {
+        for (PoEntry entry : entries) {
+            addEntry(entry);
+        }
+    }
+
+    private void addEntry(PoEntry entry) {
+        if (entry.isHeader()) {
+            header = entry;
+        }
+        if (entry.isCompiled()) {
+            add(entry);
+        }
+    }
+
+    void add(PoEntry entry) {
+        // msgfmt rejects duplicates, the first definition wins here
+        if (messages.add(entry)) {
+            hasPlurals |= entry.isPlural();
+        }
+    }
+
+    /**
+     * Generates the source.
+     *
+     * @param encoder the encoding of the source file, characters it cannot
+     *                encode are written as unicode escapes; <code>null</code>
+     *                to escape all non-ASCII characters
+     */
+    String generate(CharsetEncoder encoder) {
+        // keys sharing a hash code with an earlier key go to the overflow
+        List<Integer> hashed = new ArrayList<>();
+        List<Integer> overflow = new ArrayList<>();
+        Set<Integer> hashCodes = new HashSet<>();
+        for (int i = 0; i < messages.size(); i++) {
+            (hashCodes.add(messages.getKey(i).hashCode()) ? hashed : overflow).add(i);
+        }
+        PerfectHash hash = PerfectHash.create(hashed, messages.getKeys());
+        int size = hashed.size();
+        int[] order = new int[messages.size()];
+        for (int i = 0; i < size; i++) {
+            order[hash.slots[i]] = hashed.get(i);
+        }
+        for (int i = 0; i < overflow.size(); i++) {
+            order[size + i] = overflow.get(i);
+        }
+
+        StringBuilder strings = new StringBuilder();
+        StringBuilder counts = new StringBuilder();
+        for (int index : order) {
+            appendString(strings, messages.getKey(index));
+            Object value = messages.getValue(index);
+            if (value instanceof String[]) {
+                String[] forms = (String[]) value;
+                appendInt(counts, forms.length);
+                for (String form : forms) {
+                    appendString(strings, form);
+                }
+            } else {
+                appendInt(counts, 0);
+                appendString(strings, (String) value);
+            }
+        }
+        StringBuilder displacements = new StringBuilder();
+        for (int displacement : hash.displacements) {
+            appendInt(displacements, displacement);
+        }
+
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        StringBuilder out = new StringBuilder();
+        out.append("/* Automatically generated by the maven-gettext-plugin.  Do not modify!  */\n");
+        if (className.indexOf('.') != -1) {
+            out.append("package ").append(className, 0, className.lastIndexOf('.')).append(";\n");
+        }
+        out.append("public class ").append(simpleName).append(" extends java.util.ResourceBundle {\n");
+        out.append("  private static final int SIZE = ").append(size).append(";\n");
+        out.append("  private static final int SEED = ").append(hash.seed).append(";\n");
+        out.append("  private static final String[] KEYS = new String[").append(messages.size()).append("];\n");
+        out.append("  private static final Object[] VALUES = new Object[").append(messages.size()).append("];\n");
+        out.append("  private static final int[] DISPLACEMENTS;\n");
+        out.append("  static {\n");
+        out.append("    String[] strings = strings(");
+        appendChunks(out, strings, encoder);
+        out.append(");\n");
+        out.append("    int[] counts = ints(");
+        appendChunks(out, counts, null);
+        out.append(");\n");
+        out.append("    DISPLACEMENTS = ints(");
+        appendChunks(out, displacements, null);
+        out.append(");\n");
+        out.append("    int s = 0;\n");
+        out.append("    for (int i = 0; i < KEYS.length; i++) {\n");
+        out.append("      KEYS[i] = strings[s++];\n");
+        out.append("      if (counts[i] == 0) {\n");
+        out.append("        VALUES[i] = strings[s++];\n");
+        out.append("      } else {\n");
+        out.append("        String[] forms = new String[counts[i]];\n");
+        out.append("        for (int j = 0; j < forms.length; j++)\n");
+        out.append("          forms[j] = strings[s++];\n");
+        out.append("        VALUES[i] = forms;\n");
+        out.append("      }\n");
+        out.append("    }\n");
+        out.append("  }\n");
+
+        out.append("  private static int[] ints(String[] chunks) {\n");
+        out.append("    String data = String.join(\"\", chunks);\n");
+        out.append("    int[] result = new int[data.length() / 2];\n");
+        out.append("    for (int i = 0; i < result.length; i++)\n");
+        out.append("      result[i] = (data.charAt(2 * i) << 16) | data.charAt(2 * i + 1);\n");
+        out.append("    return result;\n");
+        out.append("  }\n");
+        out.append("  private static String[] strings(String[] chunks) {\n");
+        out.append("    String data = String.join(\"\", chunks);\n");
+        out.append("    java.util.ArrayList<String> result = new java.util.ArrayList<String>();\n");
+        out.append("    for (int p = 0; p < data.length(); ) {\n");
+        out.append("      int length = (data.charAt(p) << 16) | data.charAt(p + 1);\n");
+        out.append("      result.add(data.substring(p + 2, p + 2 + length));\n");
+        out.append("      p += 2 + length;\n");
+        out.append("    }\n");
+        out.append("    return result.toArray(new String[result.size()]);\n");
+        out.append("  }\n");
+
+        out.append("  public Object handleGetObject(String msgid) throws java.util.MissingResourceException {\n");
+        if (size == 0) {
+            out.append("    int slot = 0;\n");
+        } else {
+            out.append("    int h = msgid.hashCode() * SEED;\n");
+            out.append("    int slot = ((h ^ (h >>> 15)) & 0x7fffffff) % SIZE + DISPLACEMENTS[(h >>> 1) % DISPLACEMENTS.length];\n");
+            out.append("    if (slot >= SIZE)\n");
+            out.append("      slot -= SIZE;\n");
+            out.append("    if (msgid.equals(KEYS[slot]))\n");
+            out.append("      return VALUES[slot];\n");
+            out.append("    slot = SIZE;\n");
+        }
+        if (overflow.isEmpty()) {
+            out.append("    return null;\n");
+        } else {
+            out.append("    for (; slot < KEYS.length; slot++)\n");
+            out.append("      if (msgid.equals(KEYS[slot]))\n");
+            out.append("        return VALUES[slot];\n");
+            out.append("    return null;\n");
+        }
+        out.append("  }\n");
+
+        out.append("  public java.util.Enumeration<String> getKeys() {\n");
+        out.append("    return java.util.Collections.enumeration(java.util.Arrays.asList(KEYS));\n");
+        out.append("  }\n");
+        out.append("  public java.util.ResourceBundle getParent() {\n");
+        out.append("    return parent;\n");
+        out.append("  }\n");
+        if (hasPlurals) {
+            PluralExpression expression = PluralExpression.fromHeader(header);
+            out.append("  public static long pluralEval(long n) {\n");
+            out.append("    return ").append(expression.toJava()).append(";\n");
+            out.append("  }\n");
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static void appendInt(StringBuilder data, int value) {
+        data.append((char) (value >>> 16)).append((char) value);
+    }
+
+    private static void appendString(StringBuilder data, String s) {
+        appendInt(data, s.length());
+        data.append(s);
+    }
+
+    /**
+     * Appends encoded data as an array of string literals. A single literal
+     * could exceed the size limit of constants in class files.
+     */
+    private static void appendChunks(StringBuilder out, CharSequence data, CharsetEncoder encoder) {
+        out.append("new String[] {");
+        for (int start = 0; start < data.length(); start += LITERAL_LENGTH) {
+            out.append(start == 0 ? "\n      " : ",\n      ");
+            appendLiteral(out, data.subSequence(start, Math.min(data.length(), start + LITERAL_LENGTH)).toString(), encoder);
+        }
+        out.append(" }");
+    }
+
+    /**
+     * Appends a Java string literal. Line breaks are written as
+     * <code>\n</code> and <code>\r</code>, since unicode escapes of them
+     * would end the literal.
+     */
+    static void appendLiteral(StringBuilder out, String s, CharsetEncoder encoder) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c >= 0x20 && c < 0x7f) {
+                        out.append(c);
+                    } else if (c >= 0xa0 && encoder != null && !Character.isSurrogate(c) && encoder.canEncode(c)) {
+                        out.append(c);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                            && Character.isLowSurrogate(s.charAt(i + 1)) && encoder != null
+                            && encoder.canEncode(s.substring(i, i + 2))) {
+                        out.append(c).append(s.charAt(++i));
+                    } else {
+                        out.append(String.format("\\u%04x", (int) c));
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * A minimal perfect hash function for a set of keys with distinct hash
+     * codes, matching the lookup in the generated <code>handleGetObject</code>.
+     */
+    static class PerfectHash {
+
+        final int seed;
+        final int[] displacements;
+        /**
+         * The slot of every key, in the order of the keys.
+         */
+        final int[] slots;
+
+        private PerfectHash(int seed, int[] displacements, int[] slots) {
+            this.seed = seed;
+            this.displacements = displacements;
+            this.slots = slots;
+        }
+
+        private static int base(int h, int size) {
+            return ((h ^ (h >>> 15)) & 0x7fffffff) % size;
+        }
+
+        private static int bucket(int h, int buckets) {
+            return (h >>> 1) % buckets;
+        }
+
+        /**
+         * @param indexes the indexes of the keys to include
+         * @throws IllegalArgumentException if no hash function is found,
+         *                                  which is practically impossible
+         */
+        static PerfectHash create(List<Integer> indexes, List<String> keys) {
+            int size = indexes.size();
+            int bucketCount = Math.max(1, size / 2);
+            int seed = 0x9e3779b9;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++, seed += 0x6a09e668) {
+                PerfectHash hash = tryCreate(indexes, keys, seed, bucketCount);
+                if (hash != null) {
+                    return hash;
+                }
+            }
+            throw new IllegalArgumentException("Unable to compute a perfect hash for " + size + " messages");
+        }
+
+        private static PerfectHash tryCreate(List<Integer> indexes, List<String> keys, int seed, int bucketCount) {
+            int size = indexes.size();
+            int[] hashes = new int[size];
+            List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+            for (int b = 0; b < bucketCount; b++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (int i = 0; i < size; i++) {
+                hashes[i] = keys.get(indexes.get(i)).hashCode() * seed;
+                buckets.get(bucket(hashes[i], bucketCount)).add(i);
+            }
+            Integer[] bucketOrder = new Integer[bucketCount];
+            for (int b = 0; b < bucketCount; b++) {
+                bucketOrder[b] = b;
+            }
+            // largest buckets first, while there are many free slots
+            Arrays.sort(bucketOrder, Comparator.comparingInt((Integer b) -> buckets.get(b).size()).reversed()
+                    .thenComparingInt(b -> b));
+
+            int[] displacements = new int[bucketCount];
+            int[] slots = new int[size];
+            boolean[] used = new boolean[size];
+            for (int b : bucketOrder) {
+                List<Integer> bucket = buckets.get(b);
+                if (bucket.isEmpty()) {
+                    break;
+                }
+                int[] bases = new int[bucket.size()];
+                for (int i = 0; i < bases.length; i++) {
+                    bases[i] = base(hashes[bucket.get(i)], size);
+                    for (int j = 0; j < i; j++) {
+                        if (bases[i] == bases[j]) {
+                            // no displacement separates these keys
+                            return null;
+                        }
+                    }
+                }
+                int displacement = findDisplacement(bases, used);
+                if (displacement == -1) {
+                    return null;
+                }
+                displacements[b] = displacement;
+                for (int i = 0; i < bases.length; i++) {
+                    int slot = (bases[i] + displacement) % size;
+                    used[slot] = true;
+                    slots[bucket.get(i)] = slot;
+                }
+            }
+            return new PerfectHash(seed, displacements, slots);
+        }
+
+        private static int findDisplacement(int[] bases, boolean[] used) {
+            int size = used.length;
+            next:
+            for (int displacement = 0; displacement < size; displacement++) {
+                for (int base : bases) {
+                    if (used[(base + displacement) % size]) {
+                        continue next;
+                    }
+                }
+                return displacement;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks, typically one per po file, on a bounded pool of
+ * worker threads.
+ * <p>
+ * Each task logs to its own {@link BufferedLog}. The buffers are replayed in
+ * submission order once the corresponding task has finished, so the log looks
+ * the same as for a serial run.
+ */
+class TaskExecutor {
+
+    interface Task {
+        void execute(Log log) throws MojoExecutionException;
+    }
+
+    /**
+     * @return <code>threads</code> if positive, the number of available processors otherwise
+     */
+    static int getThreadCount(int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    static void execute(List<? extends Task> tasks, int threads, Log log)
+            throws MojoExecutionException {
+        int poolSize = Math.min(getThreadCount(threads), tasks.size());
+        if (poolSize <= 1) {
+            for (Task task : tasks) {
+                task.execute(log);
+            }
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            List<BufferedLog> logs = new ArrayList<>(tasks.size());
+            for (final Task task : tasks) {
+                final BufferedLog taskLog = new BufferedLog(log);
+                logs.add(taskLog);
+                futures.add(pool.submit(() -> {
+                    task.execute(taskLog);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    pool.shutdownNow();
+                    logs.get(i).flush();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof MojoExecutionException) {
+                        throw (MojoExecutionException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new MojoExecutionException(cause.getMessage(), cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while waiting for worker threads", e);
+                }
+                logs.get(i).flush();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
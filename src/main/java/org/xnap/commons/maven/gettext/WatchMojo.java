@@ -0,0 +1,298 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the template, the po files and the bundles up to date while the
+ * sources and po files are edited, until the build is stopped.
+ * <p>
+ * After a first build like the <code>aggregate</code> goal does for a single
+ * project, the source directory, <code>extraSourceFiles</code> and
+ * <code>poDirectory</code> are watched for changes. Changes that arrive
+ * within <code>debounce</code> milliseconds of each other are handled
+ * together:
+ * <ul>
+ * <li>Changed sources are extracted again, like <code>incremental</code>
+ * extraction does, which this goal always uses with xgettext. The messages
+ * of all other files are taken from the cache.</li>
+ * <li>If the template has changed and <code>merge</code> is set, the po
+ * files are merged and the bundles of all changed po files are built.</li>
+ * <li>If only po files have changed, only their bundles are built.</li>
+ * </ul>
+ * For example: <code>mvn gettext:watch -Dmerge -Ddist -DtargetBundle=org.example.Messages -DinProcess</code>
+ */
+@Mojo(name = "watch", requiresDirectInvocation = true, threadSafe = true)
+public class WatchMojo
+        extends AbstractChainMojo {
+
+    /**
+     * Milliseconds without further changes to wait for before a change is
+     * handled, so that a save of several files leads to one rebuild.
+     */
+    @Parameter(property = "debounce", defaultValue = "200")
+    protected long debounce;
+
+    private final Map<String, String> fingerprints = new HashMap<>();
+    private final Set<Path> sourcePaths = new HashSet<>();
+    private List<String> sourceFiles;
+    private WatchService watcher;
+    private final Set<Path> watched = new HashSet<>();
+
+    /**
+     * The changes of one rebuild.
+     */
+    private static class Changes {
+
+        boolean sources;
+        boolean overflow;
+        final Set<String> poFiles = new TreeSet<>();
+    }
+
+    public void execute()
+            throws MojoExecutionException {
+        checkConfiguration();
+        if (!inProcess) {
+            incremental = true;
+        }
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            watcher = watchService;
+            for (Path root : getWatchedRoots()) {
+                register(root);
+            }
+            build(null, true);
+            getLog().info("Watching " + watched.size() + " directories for changes, press Ctrl+C to stop.");
+            while (true) {
+                Changes changes = new Changes();
+                collect(watchService.take(), changes);
+                WatchKey key;
+                while ((key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changes);
+                }
+                if (changes.sources || !changes.poFiles.isEmpty() || changes.overflow) {
+                    long started = System.nanoTime();
+                    build(changes, false);
+                    getLog().info("Updated in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Stopped watching.");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch the source and po directories", e);
+        } finally {
+            watcher = null;
+            watched.clear();
+        }
+    }
+
+    /**
+     * Extracts, merges and builds the bundles as far as the changes require.
+     * Failures are logged, so that watching goes on after a syntax error.
+     *
+     * @param changes the changes, or <code>null</code> for a full build
+     */
+    private void build(Changes changes, boolean failOnError) throws MojoExecutionException {
+        try {
+            boolean all = changes == null || changes.overflow;
+            if (changes != null && changes.overflow) {
+                sourceFiles = null;
+                fingerprints.clear();
+            }
+            boolean templateChanged = false;
+            if (all || changes.sources) {
+                File potFile = new File(poDirectory, keysFile);
+                String before = fingerprint(potFile);
+                super.execute();
+                templateChanged = !before.equals(fingerprint(potFile));
+            }
+            if (merge && (all || templateChanged)) {
+                createMergeMojo().execute();
+            }
+            if (dist) {
+                if (all || merge && templateChanged) {
+                    createDistMojo().execute();
+                } else if (!changes.poFiles.isEmpty()) {
+                    List<String> files = new ArrayList<>();
+                    for (String fileName : changes.poFiles) {
+                        if (new File(poDirectory, fileName).isFile()) {
+                            files.add(fileName);
+                        }
+                    }
+                    createDistMojo().execute(files.toArray(new String[0]));
+                }
+            }
+        } catch (MojoExecutionException e) {
+            if (failOnError) {
+                throw e;
+            }
+            getLog().error(e.getMessage(), e.getCause());
+        } catch (RuntimeException e) {
+            // e.g. a malformed po file that a parser rejects unchecked
+            if (failOnError) {
+                throw e;
+            }
+            getLog().error("Build failed: " + e, e);
+        }
+    }
+
+    private static String fingerprint(File file) throws MojoExecutionException {
+        try {
+            return file.isFile() ? GettextUtils.sha256(file.getName(), file) : "";
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + file, e);
+        }
+    }
+
+    private List<Path> getWatchedRoots() {
+        List<Path> roots = new ArrayList<>();
+        for (File root : getSourceRoots()) {
+            roots.add(normalize(root));
+        }
+        if (extraSourceFiles != null && extraSourceFiles.getDirectory() != null) {
+            roots.add(normalize(new File(extraSourceFiles.getDirectory())));
+        }
+        roots.add(normalize(poDirectory));
+        return roots;
+    }
+
+    private static Path normalize(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    /**
+     * Watches a directory and all directories below it.
+     */
+    private void register(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (watched.add(dir)) {
+                    dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void collect(WatchKey key, Changes changes) throws IOException {
+        Path directory = (Path) key.watchable();
+        Path poPath = normalize(poDirectory);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            boolean created = event.kind() == StandardWatchEventKinds.ENTRY_CREATE;
+            boolean deleted = event.kind() == StandardWatchEventKinds.ENTRY_DELETE;
+            if (created && Files.isDirectory(path)) {
+                register(path);
+            }
+            fingerprints.remove(path.toString());
+            if (path.startsWith(poPath)) {
+                // the template is written by this goal
+                if (path.getFileName().toString().endsWith(".po")) {
+                    changes.poFiles.add(poPath.relativize(path).toString());
+                }
+                continue;
+            }
+            if (created || deleted) {
+                // the source files are scanned again
+                if (isSourcePath(path)) {
+                    sourceFiles = null;
+                    changes.sources = true;
+                }
+            } else if (sourcePaths.contains(path)) {
+                changes.sources = true;
+            }
+        }
+        if (!key.reset()) {
+            watched.remove(directory);
+        }
+    }
+
+    private boolean isSourcePath(Path path) {
+        List<Path> roots = getWatchedRoots();
+        // the last root is the po directory
+        for (Path root : roots.subList(0, roots.size() - 1)) {
+            if (path.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the source directories only when files have been created or
+     * deleted since the last scan.
+     */
+    @Override
+    protected List<String> getSourceFiles() throws MojoExecutionException {
+        if (sourceFiles == null) {
+            sourceFiles = Collections.unmodifiableList(super.getSourceFiles());
+            sourcePaths.clear();
+            for (String path : sourceFiles) {
+                sourcePaths.add(normalize(getSourceFile(path)));
+            }
+        }
+        return new ArrayList<>(sourceFiles);
+    }
+
+    /**
+     * Hashes a source file only if it has changed since it was last hashed.
+     */
+    @Override
+    protected String getFingerprint(String path, File file) throws IOException {
+        String key = normalize(file).toString();
+        String fingerprint = fingerprints.get(key);
+        if (fingerprint == null) {
+            fingerprint = super.getFingerprint(path, file);
+            fingerprints.put(key, fingerprint);
+        }
+        return fingerprint;
+    }
+}
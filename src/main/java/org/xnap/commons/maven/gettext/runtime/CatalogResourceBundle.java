@@ -0,0 +1,236 @@
+package org.xnap.commons.maven.gettext.runtime;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * A resource bundle backed by a binary catalog written by the
+ * <code>dist</code> goal with <code>outputFormat=catalog</code>.
+ * <p>
+ * Catalogs on the file system are memory-mapped, catalogs inside archives
+ * are copied to a direct buffer, so the messages are not kept on the heap.
+ * Strings are only decoded when they are looked up. Values are a
+ * <code>String</code>, or a <code>String[]</code> for messages with plural
+ * forms, like in the bundles generated by msgfmt.
+ * <p>
+ * The file consists of big-endian 32 bit integers followed by a pool of
+ * UTF-8 strings:
+ * <pre>
+ * header:  magic, version, entry count, table size, value count
+ * table:   table size slots with entry index + 1, or 0 if empty
+ * entries: hash, key offset, key length, first value, plural form count
+ *          (0 for messages without plural forms)
+ * values:  offset, length
+ * pool:    UTF-8 strings, offsets are relative to the start of the pool
+ * </pre>
+ * The table is indexed by <code>String.hashCode()</code> of the key with
+ * linear probing and has a power of two size.
+ */
+public class CatalogResourceBundle extends ResourceBundle {
+
+    public static final int MAGIC = 0x47434154;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+    public static final int ENTRY_SIZE = 20;
+    public static final int VALUE_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int tableMask;
+    private final int entriesStart;
+    private final int valuesStart;
+    private final int poolStart;
+
+    /**
+     * Loads the catalog from a resource next to a bundle class.
+     *
+     * @param owner    the bundle class
+     * @param resource the name of the catalog, relative to the class
+     */
+    protected CatalogResourceBundle(Class<?> owner, String resource) {
+        this(load(owner, resource));
+    }
+
+    public CatalogResourceBundle(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a message catalog");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported message catalog version " + buffer.getInt(4));
+        }
+        entryCount = buffer.getInt(8);
+        int tableSize = buffer.getInt(12);
+        int valueCount = buffer.getInt(16);
+        tableMask = tableSize - 1;
+        entriesStart = HEADER_SIZE + tableSize * 4;
+        valuesStart = entriesStart + entryCount * ENTRY_SIZE;
+        poolStart = valuesStart + valueCount * VALUE_SIZE;
+    }
+
+    private static ByteBuffer load(Class<?> owner, String resource) {
+        URL url = owner.getResource(resource);
+        if (url == null) {
+            throw new MissingResourceException("Message catalog not found: " + resource, owner.getName(), resource);
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            try (InputStream in = url.openStream()) {
+                byte[] bytes = in.readAllBytes();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                buffer.put(bytes);
+                buffer.flip();
+                return buffer;
+            }
+        } catch (IOException | URISyntaxException e) {
+            MissingResourceException exception = new MissingResourceException(
+                    "Unable to load message catalog " + url + ": " + e.getMessage(), owner.getName(), resource);
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    @Override
+    protected Object handleGetObject(String key) {
+        int entry = find(key);
+        if (entry == -1) {
+            return null;
+        }
+        int base = entriesStart + entry * ENTRY_SIZE;
+        int value = buffer.getInt(base + 12);
+        int plurals = buffer.getInt(base + 16);
+        if (plurals == 0) {
+            return getValue(value);
+        }
+        String[] forms = new String[plurals];
+        for (int i = 0; i < plurals; i++) {
+            forms[i] = getValue(value + i);
+        }
+        return forms;
+    }
+
+    /**
+     * Returns the keys of this catalog, without the keys of the parent
+     * bundle, like the bundles generated by msgfmt.
+     */
+    @Override
+    public Enumeration<String> getKeys() {
+        List<String> keys = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            int base = entriesStart + i * ENTRY_SIZE;
+            keys.add(decode(buffer.getInt(base + 4), buffer.getInt(base + 8)));
+        }
+        return Collections.enumeration(keys);
+    }
+
+    public ResourceBundle getParent() {
+        return parent;
+    }
+
+    private int find(String key) {
+        int hash = key.hashCode();
+        int slot = spread(hash) & tableMask;
+        while (true) {
+            int index = buffer.getInt(HEADER_SIZE + slot * 4);
+            if (index == 0) {
+                return -1;
+            }
+            int base = entriesStart + (index - 1) * ENTRY_SIZE;
+            if (buffer.getInt(base) == hash && equals(key, buffer.getInt(base + 4), buffer.getInt(base + 8))) {
+                return index - 1;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    /**
+     * Mixes the high bits into the low bits, which select the slot.
+     */
+    public static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private String getValue(int index) {
+        int base = valuesStart + index * VALUE_SIZE;
+        return decode(buffer.getInt(base), buffer.getInt(base + 4));
+    }
+
+    private String decode(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(poolStart + offset);
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a string with UTF-8 bytes in the pool without decoding them.
+     * Unpaired surrogates compare like the <code>?</code> they are encoded as.
+     */
+    private boolean equals(String s, int offset, int length) {
+        int position = poolStart + offset;
+        int end = position + length;
+        for (int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, s.charAt(++i));
+            } else if (Character.isSurrogate((char) c)) {
+                c = '?';
+            }
+            if (c < 0x80) {
+                if (position >= end || buffer.get(position++) != (byte) c) {
+                    return false;
+                }
+            } else {
+                int count = c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+                if (end - position < count) {
+                    return false;
+                }
+                int shift = 6 * (count - 1);
+                int lead = (0xff00 >> count) & 0xff;
+                if (buffer.get(position++) != (byte) (lead | (c >> shift))) {
+                    return false;
+                }
+                for (shift -= 6; shift >= 0; shift -= 6) {
+                    if (buffer.get(position++) != (byte) (0x80 | ((c >> shift) & 0x3f))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return position == end;
+    }
+}
@@ -0,0 +1,70 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares the template merged from the shards in <code>shards/</code>
+ * with <code>messages.pot</code>. The files are written by hand in the
+ * format of <code>xgettext -F -w 40</code>, not generated by xgettext:
+ * <code>shard1.pot</code> and <code>shard2.pot</code> stand for two halves
+ * of the source files and <code>messages.pot</code> for a single run over
+ * all of them.
+ */
+public class GettextMojoTest extends TestCase {
+
+    private static File getFile(String name) throws Exception {
+        return new File(GettextMojoTest.class.getResource("shards/" + name).toURI());
+    }
+
+    private static String mergeShards(String... extraArgs) throws Exception {
+        MessageCatalog catalog = GettextMojo.mergeShards(new File[]{getFile("shard1.pot"), getFile("shard2.pot")});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        catalog.write(out, "by-file", GettextMojo.getWidth(extraArgs, false));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void testShardsMergeToSingleProcessOutput() throws Exception {
+        String expected = new String(Files.readAllBytes(getFile("messages.pot").toPath()), StandardCharsets.UTF_8);
+        assertEquals(expected, mergeShards("--width=40"));
+        assertEquals(expected, mergeShards("-w40"));
+        assertEquals(expected, mergeShards("-w", "40"));
+        assertEquals(expected, mergeShards("--width", "40"));
+    }
+
+    public void testGetWidth() throws Exception {
+        assertEquals(PoWriter.DEFAULT_WIDTH, GettextMojo.getWidth(null, false));
+        assertEquals(PoWriter.DEFAULT_WIDTH, GettextMojo.getWidth(new String[]{"--no-location"}, false));
+        assertEquals(0, GettextMojo.getWidth(new String[]{"--width=40"}, true));
+        assertEquals(0, GettextMojo.getWidth(new String[]{"--no-wrap", "-w", "40"}, false));
+        assertEquals(120, GettextMojo.getWidth(new String[]{"-w", "40", "--width=120"}, false));
+        assertEquals(20, GettextMojo.getWidth(new String[]{"-w5"}, false));
+        try {
+            GettextMojo.getWidth(new String[]{"--width=wide"}, false);
+            fail("invalid width accepted");
+        } catch (MojoExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compares the output of {@link MessageMerger} byte by byte with the
+ * expected files in <code>merge/</code>. They are written by hand in
+ * msgmerge's output format, not generated by msgmerge:
+ * <code>de-by-file.po</code> follows <code>msgmerge -F de.po template.pot</code>,
+ * <code>de-sorted.po</code> follows <code>msgmerge -s</code> without the
+ * <code>POT-Creation-Date</code> field and <code>de-no-fuzzy.po</code>
+ * follows <code>msgmerge -F -N</code>.
+ */
+public class MessageMergerTest extends TestCase {
+
+    private static File getFile(String name) throws URISyntaxException {
+        return new File(MessageMergerTest.class.getResource("merge/" + name).toURI());
+    }
+
+    private static void assertMerge(String expected, MessageMerger merger, String poFile, String sort,
+            boolean potCreationDate) throws IOException, URISyntaxException {
+        byte[] actual = merger.merge(getFile(poFile), sort, potCreationDate, PoWriter.DEFAULT_WIDTH);
+        assertEquals(expected, new String(Files.readAllBytes(getFile(expected).toPath()), StandardCharsets.UTF_8),
+                new String(actual, StandardCharsets.UTF_8));
+    }
+
+    private static MessageMerger createMerger(boolean fuzzyMatching, String... poFiles)
+            throws IOException, URISyntaxException {
+        MessageMerger merger = new MessageMerger(getFile("template.pot"), fuzzyMatching, new MessageKeys());
+        for (String poFile : poFiles) {
+            merger.index(getFile(poFile));
+        }
+        return merger;
+    }
+
+    /**
+     * Covers exact and fuzzy matches, a singular translation of a plural
+     * message, a revived obsolete message, translations that become
+     * obsolete and the header fields taken from the template.
+     */
+    public void testMergeSortedByFile() throws Exception {
+        assertMerge("de-by-file.po", createMerger(true, "de.po"), "de.po", "by-file", true);
+    }
+
+    public void testMergeSortedByMsgid() throws Exception {
+        assertMerge("de-sorted.po", createMerger(true, "de.po"), "de.po", "output", false);
+    }
+
+    public void testMergeWithoutFuzzyMatching() throws Exception {
+        assertMerge("de-no-fuzzy.po", createMerger(false, "de.po"), "de.po", "by-file", true);
+    }
+
+    /**
+     * "Delete users" and "Deleted user" are equally similar to "Delete
+     * user", the one that comes first in the po file wins regardless of
+     * the order the po files were indexed in.
+     */
+    public void testFuzzyMatchTieTakesFirstMessageOfPoFile() throws Exception {
+        MessageMerger merger = createMerger(true, "tie.po", "de.po");
+        assertMerge("de-by-file.po", merger, "de.po", "by-file", true);
+        assertMerge("tie-by-file.po", merger, "tie.po", "by-file", true);
+
+        merger = createMerger(true, "de.po", "tie.po");
+        assertMerge("tie-by-file.po", merger, "tie.po", "by-file", true);
+        assertMerge("de-by-file.po", merger, "de.po", "by-file", true);
+    }
+}
@@ -0,0 +1,92 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads po files with {@link PoReader} and writes them back with
+ * {@link PoWriter}.
+ */
+public class PoWriterTest extends TestCase {
+
+    private static List<PoEntry> read(String po) throws IOException {
+        List<PoEntry> entries = new ArrayList<>();
+        try (PoReader reader = new PoReader(new StringReader(po), "test.po")) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static String write(List<PoEntry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PoWriter writer = new PoWriter(out, StandardCharsets.UTF_8, PoWriter.DEFAULT_WIDTH)) {
+            for (PoEntry entry : entries) {
+                writer.write(entry);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Covers comments, wrapped references and strings, flags, contexts,
+     * plural forms, previous ids, escapes and obsolete messages.
+     */
+    public void testRoundTrip() throws Exception {
+        byte[] content = Files.readAllBytes(Paths.get(PoWriterTest.class.getResource("po/roundtrip.po").toURI()));
+        List<PoEntry> entries = new ArrayList<>();
+        try (PoReader reader = new PoReader(new ByteArrayInputStream(content), "roundtrip.po")) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        }
+        assertEquals(new String(content, StandardCharsets.UTF_8), write(entries));
+    }
+
+    public void testObsoleteEntryFollowingAnotherEntry() throws Exception {
+        List<PoEntry> entries = read("msgid \"a\"\nmsgstr \"A\"\n#~ msgid \"b\"\n#~ msgstr \"B\"\nmsgid \"c\"\nmsgstr \"C\"\n");
+        assertEquals(3, entries.size());
+        assertFalse(entries.get(0).isObsolete());
+        assertTrue(entries.get(1).isObsolete());
+        assertFalse(entries.get(2).isObsolete());
+    }
+
+    /**
+     * Like msgattrib, only the translator comments and the fuzzy flag are
+     * kept when a message is made obsolete.
+     */
+    public void testSetObsolete() throws Exception {
+        List<PoEntry> entries = read("# translator\n#. extracted\n#: src/A.java:10\n#, fuzzy, java-format\n"
+                + "msgid \"a\"\nmsgstr \"A\"\n");
+        entries = new MessageFilter(new String[]{"--set-obsolete"}).apply(entries);
+        assertEquals("# translator\n#, fuzzy\n#~ msgid \"a\"\n#~ msgstr \"A\"\n", write(entries));
+    }
+}
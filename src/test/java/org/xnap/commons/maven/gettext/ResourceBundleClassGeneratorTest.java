@@ -0,0 +1,175 @@
+package org.xnap.commons.maven.gettext;
+
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * Loads the classes generated by {@link ResourceBundleClassGenerator} and
+ * looks up their messages.
+ */
+public class ResourceBundleClassGeneratorTest extends TestCase {
+
+    private static final String CLASS_NAME = "test.Messages_de";
+
+    private static final String PO = "msgid \"\"\n"
+            + "msgstr \"\"\n"
+            + "\"Content-Type: text/plain; charset=UTF-8\\n\"\n"
+            + "\"Plural-Forms: nplurals=3; plural=n==1 ? 0 : n%10>=2 && n%10<=4 ? 1 : 2;\\n\"\n"
+            + "\n"
+            + "msgid \"Open file\"\n"
+            + "msgstr \"Datei \u00f6ffnen\"\n"
+            + "\n"
+            + "msgctxt \"menu\"\n"
+            + "msgid \"Quit\"\n"
+            + "msgstr \"Beenden\"\n"
+            + "\n"
+            + "msgid \"Quit\"\n"
+            + "msgstr \"Verlassen\"\n"
+            + "\n"
+            + "msgid \"One file\"\n"
+            + "msgid_plural \"{0} files\"\n"
+            + "msgstr[0] \"Eine Datei\"\n"
+            + "msgstr[1] \"{0} Dateien\"\n"
+            + "msgstr[2] \"{0} Dateien!\"\n"
+            + "\n"
+            + "#, fuzzy\n"
+            + "msgid \"Save\"\n"
+            + "msgstr \"Speichern\"\n"
+            + "\n"
+            + "msgid \"Close\"\n"
+            + "msgstr \"\"\n";
+
+    /**
+     * Defines the generated classes when the bundle class or one of its
+     * shards is loaded.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        GeneratedClassLoader(Map<String, byte[]> classes) {
+            super(GeneratedClassLoader.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static ResourceBundleClassGenerator createGenerator(String po) throws Exception {
+        List<PoEntry> entries = new ArrayList<>();
+        try (PoReader reader = new PoReader(new StringReader(po), "de.po")) {
+            PoEntry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+        }
+        ResourceBundleClassGenerator generator = new ResourceBundleClassGenerator(CLASS_NAME);
+        generator.addAll(entries);
+        return generator;
+    }
+
+    private static Class<?> load(ResourceBundleClassGenerator generator, int shards) throws Exception {
+        generator.setShards(shards);
+        Map<String, byte[]> classes = new HashMap<>();
+        classes.put(CLASS_NAME, generator.generate());
+        if (shards > 1) {
+            for (int i = 0; i < shards; i++) {
+                classes.put(ResourceBundleClassGenerator.getShardClassName(CLASS_NAME, i),
+                        generator.generateShard(i));
+            }
+        }
+        return new GeneratedClassLoader(classes).loadClass(CLASS_NAME);
+    }
+
+    private static void assertBundle(Class<?> bundleClass) throws Exception {
+        ResourceBundle bundle = (ResourceBundle) bundleClass.getDeclaredConstructor().newInstance();
+        assertEquals("Datei \u00f6ffnen", bundle.getObject("Open file"));
+        assertEquals("Beenden", bundle.getObject("menu" + PoEntry.CONTEXT_SEPARATOR + "Quit"));
+        assertEquals("Verlassen", bundle.getObject("Quit"));
+        assertTrue(Arrays.equals(new String[]{"Eine Datei", "{0} Dateien", "{0} Dateien!"},
+                (String[]) bundle.getObject("One file")));
+        // like msgfmt, fuzzy and untranslated messages are left out
+        assertFalse(bundle.containsKey("Save"));
+        assertFalse(bundle.containsKey("Close"));
+        assertFalse(bundle.containsKey("Open"));
+
+        // like msgfmt, the header is the translation of the empty key
+        assertTrue(((String) bundle.getObject("")).startsWith("Content-Type: text/plain; charset=UTF-8\n"));
+
+        Set<String> keys = new HashSet<>(Collections.list(bundle.getKeys()));
+        assertEquals(new HashSet<>(Arrays.asList("", "Open file", "menu" + PoEntry.CONTEXT_SEPARATOR + "Quit",
+                "Quit", "One file")), keys);
+
+        Method pluralEval = bundleClass.getMethod("pluralEval", long.class);
+        assertEquals(0L, pluralEval.invoke(null, 1L));
+        assertEquals(1L, pluralEval.invoke(null, 3L));
+        assertEquals(2L, pluralEval.invoke(null, 5L));
+        assertEquals(2L, pluralEval.invoke(null, 11L));
+        assertEquals(1L, pluralEval.invoke(null, 22L));
+    }
+
+    public void testGenerate() throws Exception {
+        assertBundle(load(createGenerator(PO), 1));
+    }
+
+    public void testGenerateShards() throws Exception {
+        assertBundle(load(createGenerator(PO), 3));
+    }
+
+    public void testRequiredShards() throws Exception {
+        ResourceBundleClassGenerator generator = new ResourceBundleClassGenerator(CLASS_NAME);
+        for (int i = 0; i < 40000; i++) {
+            PoEntry entry = new PoEntry();
+            entry.setMsgid("Message " + i);
+            entry.setMsgstr("Nachricht " + i);
+            generator.add(entry);
+        }
+        try {
+            generator.generate();
+            fail("40000 messages fit into a single class");
+        } catch (ClassFileWriter.TooManyConstantsException e) {
+            // expected
+        }
+        int shards = generator.getRequiredShards();
+        assertTrue(shards > 1);
+        ResourceBundle bundle = (ResourceBundle) load(generator, shards).getDeclaredConstructor().newInstance();
+        assertEquals("Nachricht 0", bundle.getObject("Message 0"));
+        assertEquals("Nachricht 39999", bundle.getObject("Message 39999"));
+        List<String> keys = Collections.list(bundle.getKeys());
+        assertEquals(40000, keys.size());
+    }
+}